@@ -0,0 +1,63 @@
+package org.coderclan.whistle;
+
+import net.jcip.annotations.ThreadSafe;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * {@link EventPersistenter} view of a {@link ReactiveEventPersistenter}, used by the components which run on their
+ * own threads (the retrier, the purger and the ACK handlers) when the application only has a reactive store.
+ * It blocks, so it must never be called on an event loop thread.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class BlockingEventPersistenter implements EventPersistenter {
+    private final ReactiveEventPersistenter delegate;
+
+    public BlockingEventPersistenter(ReactiveEventPersistenter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public <C extends EventContent> String persistEvent(EventType<C> type, C content) {
+        return delegate.persistEvent(type, content).block();
+    }
+
+    @Override
+    public <C extends EventContent> String persistEvent(Event<C> event) {
+        return delegate.persistEvent(event).block();
+    }
+
+    @Override
+    public void confirmEvent(String persistentEventId) {
+        confirmEvents(Collections.singletonList(persistentEventId));
+    }
+
+    @Override
+    public void confirmEvents(Collection<String> persistentEventIds) {
+        delegate.confirmEvents(persistentEventIds).block();
+    }
+
+    @Override
+    public List<Event<?>> retrieveUnconfirmedEvent() {
+        return retrieveUnconfirmedEvent(Constants.RETRY_BATCH_COUNT);
+    }
+
+    @Override
+    public List<Event<?>> retrieveUnconfirmedEvent(int count) {
+        List<Event<?>> events = delegate.retrieveUnconfirmedEvent(count).block();
+        return Objects.isNull(events) ? Collections.emptyList() : events;
+    }
+
+    @Override
+    public int purgeConfirmedEvents(int retention, int limit) {
+        Integer purged = delegate.purgeConfirmedEvents(retention, limit).block();
+        return Objects.isNull(purged) ? 0 : purged;
+    }
+}
@@ -0,0 +1,200 @@
+package org.coderclan.whistle;
+
+import net.jcip.annotations.ThreadSafe;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.exception.EventQueueFullException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
+
+/**
+ * {@link EventSender} queueing the messages in a bounded, lock-free multi-producer queue, unlike
+ * {@link ReactorEventSender} whose queue is unbounded and whose producers contend on one monitor.
+ * <p>
+ * The queue is bounded by a number of events and, optionally, by the estimated size of the queued events. Events
+ * which do not fit are handled by the {@link OverflowPolicy}: persisted events are dropped from memory and re-delivered
+ * by {@link FailedEventRetrier}, so a stalled binder can not exhaust the heap.
+ * <p>
+ * The queue is drained to the single subscriber of {@link #asFlux()} as it requests, by whichever thread wins the
+ * drain, without locks.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class BoundedEventSender implements EventSender {
+    private static final Logger log = LoggerFactory.getLogger(BoundedEventSender.class);
+
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicReference<FluxSink<Message<?>>> subscriber = new AtomicReference<>();
+
+    private final int capacity;
+    private final long maxBytes;
+    private final OverflowPolicy overflowPolicy;
+    private final ToIntFunction<Event<?>> sizeEstimator;
+    private final EventTypeRegistrar eventTypeRegistrar;
+    private final Flux<Message<?>> flux;
+
+    public BoundedEventSender(int capacity, long maxBytes, OverflowPolicy overflowPolicy, ToIntFunction<Event<?>> sizeEstimator) {
+        this(new EventTypeRegistrar(null, null), capacity, maxBytes, overflowPolicy, sizeEstimator);
+    }
+
+    /**
+     * @param eventTypeRegistrar provides the per event type message templates
+     * @param capacity           maximum number of queued events
+     * @param maxBytes           maximum estimated size of the queued events, in bytes, 0 for no limit
+     * @param overflowPolicy     what to do with the events which are not persisted when the queue is full
+     * @param sizeEstimator      estimated size of an event in bytes, only used if {@code maxBytes} is positive
+     */
+    public BoundedEventSender(EventTypeRegistrar eventTypeRegistrar, int capacity, long maxBytes, OverflowPolicy overflowPolicy,
+                              ToIntFunction<Event<?>> sizeEstimator) {
+        this.eventTypeRegistrar = eventTypeRegistrar;
+        this.capacity = Math.max(1, capacity);
+        this.maxBytes = Objects.isNull(sizeEstimator) ? 0 : Math.max(0, maxBytes);
+        this.overflowPolicy = overflowPolicy;
+        this.sizeEstimator = sizeEstimator;
+        this.flux = Flux.create(this::subscribe);
+        log.info("Outgoing events are queued in a bounded queue: capacity={}, maxBytes={}, overflowPolicy={}", this.capacity, this.maxBytes, overflowPolicy);
+    }
+
+    private void subscribe(FluxSink<Message<?>> sink) {
+        if (!subscriber.compareAndSet(null, sink)) {
+            sink.error(new IllegalStateException("BoundedEventSender supports a single subscriber"));
+            return;
+        }
+        sink.onRequest(n -> drain());
+        sink.onDispose(() -> subscriber.compareAndSet(sink, null));
+        drain();
+    }
+
+    @Override
+    public Flux<Message<?>> asFlux() {
+        return flux;
+    }
+
+    /**
+     * Queue the event, or apply the {@link OverflowPolicy} if the queue is full.
+     *
+     * @throws EventQueueFullException if the queue is full, the event is not persisted and the policy is
+     *                                 {@link OverflowPolicy#FAIL}
+     */
+    @Override
+    public void send(Event<? extends EventContent> event) {
+        int size = maxBytes > 0 ? sizeEstimator.applyAsInt(event) : 0;
+        if (!reserve(size)) {
+            overflow(event);
+            return;
+        }
+        queue.offer(new Pending(eventTypeRegistrar.getDescriptor(event.getType()).toMessage(event), size));
+        drain();
+    }
+
+    /**
+     * Reserve a slot of {@code size} bytes. A single event larger than {@code maxBytes} is accepted if nothing else
+     * is queued, so that it is not dropped forever.
+     */
+    private boolean reserve(int size) {
+        for (; ; ) {
+            int current = queued.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (queued.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        if (maxBytes > 0) {
+            long bytes = queuedBytes.addAndGet(size);
+            if (bytes > maxBytes && bytes != size) {
+                release(size);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void release(int size) {
+        if (maxBytes > 0) {
+            queuedBytes.addAndGet(-size);
+        }
+        queued.decrementAndGet();
+    }
+
+    private void overflow(Event<? extends EventContent> event) {
+        dropped.incrementAndGet();
+        if (Objects.nonNull(event.getPersistentEventId())) {
+            log.debug("Send queue full, event dropped from memory and left to the retrier: persistentEventId={}", event.getPersistentEventId());
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.FAIL) {
+            throw new EventQueueFullException("Send queue full (capacity=" + capacity + ", maxBytes=" + maxBytes + "), event type=" + event.getType());
+        }
+        log.warn("Send queue full, event which is not persisted dropped: type={}", event.getType());
+    }
+
+    /**
+     * Emit the queued messages as long as the subscriber requests. Only one thread drains at a time, the others
+     * leave their work to it.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            FluxSink<Message<?>> sink = subscriber.get();
+            if (Objects.nonNull(sink)) {
+                Pending pending;
+                while (sink.requestedFromDownstream() > 0 && (pending = queue.poll()) != null) {
+                    release(pending.size);
+                    sink.next(pending.message);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * @return number of queued events
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return estimated size of the queued events in bytes, 0 if the queue is not bounded by size
+     */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /**
+     * @return number of events dropped or rejected because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private static final class Pending {
+        private final Message<?> message;
+        private final int size;
+
+        private Pending(Message<?> message, int size) {
+            this.message = message;
+            this.size = size;
+        }
+    }
+}
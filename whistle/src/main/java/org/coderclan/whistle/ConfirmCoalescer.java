@@ -0,0 +1,151 @@
+package org.coderclan.whistle;
+
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collect broker ACKs in a lock-free queue and confirm them with {@link EventPersistenter#confirmEvents(java.util.Collection)}
+ * every {@code flushInterval} milliseconds or as soon as {@code batchSize} ACKs are queued, so that the binder's ACK
+ * threads never wait for the database.
+ * <p>
+ * ACKs which are lost (e.g. the flush failed or the application was killed) only cause the events to be re-delivered
+ * by {@link FailedEventRetrier}.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class ConfirmCoalescer implements InitializingBean, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(ConfirmCoalescer.class);
+
+    private final EventPersistenter eventPersistenter;
+    private final int batchSize;
+    private final long flushInterval;
+
+    private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushTotalNanos = new AtomicLong();
+
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * @param eventPersistenter persistenter to confirm events with
+     * @param batchSize         maximum number of events confirmed by one statement
+     * @param flushInterval     maximum delay of a confirmation, in milliseconds
+     */
+    public ConfirmCoalescer(EventPersistenter eventPersistenter, int batchSize, long flushInterval) {
+        this.eventPersistenter = eventPersistenter;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushInterval = Math.max(1, flushInterval);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        log.info("Confirm coalescing enabled, batchSize={}, flushInterval={}ms", batchSize, flushInterval);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "whistle-confirm-coalescer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue the ACK of an event. Never blocks.
+     *
+     * @param persistentEventId Persistent ID of the ACKed event
+     */
+    public void confirm(String persistentEventId) {
+        queue.add(persistentEventId);
+        ScheduledExecutorService s = this.scheduler;
+        if (queueDepth.incrementAndGet() >= batchSize && Objects.nonNull(s) && flushRequested.compareAndSet(false, true)) {
+            s.execute(this::flush);
+        }
+    }
+
+    /**
+     * Confirm all queued events, {@code batchSize} events per {@link EventPersistenter#confirmEvents(java.util.Collection)}
+     * call. Only called by the single scheduler thread (or by {@link #destroy()} after the scheduler stopped).
+     */
+    private void flush() {
+        flushRequested.set(false);
+        List<String> ids;
+        do {
+            ids = drain();
+            if (ids.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                eventPersistenter.confirmEvents(ids);
+            } catch (Exception e) {
+                log.error("Failed to confirm {} event(s), they will be re-delivered by the retrier.", ids.size(), e);
+            } finally {
+                flushCount.incrementAndGet();
+                flushTotalNanos.addAndGet(System.nanoTime() - start);
+            }
+        } while (ids.size() == batchSize);
+    }
+
+    private List<String> drain() {
+        List<String> ids = new ArrayList<>(Math.min(batchSize, queueDepth.get()));
+        String id;
+        while (ids.size() < batchSize && (id = queue.poll()) != null) {
+            ids.add(id);
+        }
+        queueDepth.addAndGet(-ids.size());
+        return ids;
+    }
+
+    /**
+     * @return number of ACKs waiting to be confirmed
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return number of {@link EventPersistenter#confirmEvents(java.util.Collection)} calls so far
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * @return total time spent in {@link EventPersistenter#confirmEvents(java.util.Collection)} calls, in nanoseconds
+     */
+    public long getFlushTotalNanos() {
+        return flushTotalNanos.get();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        ScheduledExecutorService s = this.scheduler;
+        if (Objects.isNull(s)) {
+            return;
+        }
+        s.shutdown();
+        if (!s.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("ConfirmCoalescer scheduler did not stop in time.");
+            s.shutdownNow();
+        }
+        flush();
+        log.info("ConfirmCoalescer shut down.");
+    }
+}
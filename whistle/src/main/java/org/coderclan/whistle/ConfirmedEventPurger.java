@@ -0,0 +1,96 @@
+package org.coderclan.whistle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delete confirmed Events older than the retention, in small chunks with a pause between chunks,
+ * so that the purge never holds locks for long or causes replication lag.
+ * If events are stored in time partitions, maintain the partitions instead, expired partitions are dropped as a whole.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+public class ConfirmedEventPurger implements ApplicationListener<ApplicationStartedEvent>, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(ConfirmedEventPurger.class);
+
+    private final WhistleConfigurationProperties properties;
+
+    private final EventPersistenter eventPersistenter;
+    private ScheduledExecutorService scheduler;
+
+    public ConfirmedEventPurger(@Autowired(required = false) EventPersistenter eventPersistenter, @Autowired WhistleConfigurationProperties properties) {
+        this.eventPersistenter = eventPersistenter;
+        this.properties = properties;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationStartedEvent event) {
+        if (Objects.isNull(eventPersistenter) || (this.properties.getConfirmedEventRetention() <= 0 && !this.properties.isPartitionedTable())) {
+            return;
+        }
+
+        log.info("Confirmed events are purged after {}s, batchSize={}, interval={}s, throttle={}ms",
+                this.properties.getConfirmedEventRetention(), this.properties.getPurgeBatchSize(),
+                this.properties.getPurgeInterval(), this.properties.getPurgeThrottle());
+
+        this.scheduler = Executors.newScheduledThreadPool(1);
+        this.scheduler.scheduleWithFixedDelay(this::maintain, this.properties.getPurgeInterval(), this.properties.getPurgeInterval(), TimeUnit.SECONDS);
+    }
+
+    private void maintain() {
+        try {
+            if (!eventPersistenter.maintainPartitions(this.properties.getConfirmedEventRetention())
+                    && this.properties.getConfirmedEventRetention() > 0) {
+                purge();
+            }
+        } catch (Exception e) {
+            log.error("Exception countered when maintaining the persisted events.", e);
+        }
+    }
+
+    /**
+     * Delete chunks of confirmed events until a chunk is not full.
+     *
+     * @return number of deleted events
+     */
+    int purge() {
+        int batchSize = Math.max(1, this.properties.getPurgeBatchSize());
+        int total = 0;
+        try {
+            int deleted;
+            do {
+                deleted = eventPersistenter.purgeConfirmedEvents(this.properties.getConfirmedEventRetention(), batchSize);
+                total += deleted;
+                if (deleted >= batchSize && this.properties.getPurgeThrottle() > 0) {
+                    Thread.sleep(this.properties.getPurgeThrottle());
+                }
+            } while (deleted >= batchSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Exception countered when purging the confirmed events.", e);
+        }
+        if (total > 0) {
+            log.info("Purged {} confirmed event(s).", total);
+        }
+        return total;
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            log.info("ConfirmedEventPurger scheduler shut down.");
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package org.coderclan.whistle;
+
+/**
+ * How the events published in a transaction are delivered.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+public enum DeliveryMode {
+    /**
+     * The events are sent by the node which published them, right after The Transaction committed.
+     */
+    TRANSACTIONAL,
+    /**
+     * The events are only persisted by the publishing node, and are published in id order by
+     * {@link org.coderclan.whistle.rdbms.OutboxRelay} from the persistent table. RDBMS only.
+     */
+    RELAY
+}
@@ -4,6 +4,7 @@ import net.jcip.annotations.Immutable;
 import org.coderclan.whistle.api.EventContent;
 import org.coderclan.whistle.api.EventType;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -14,11 +15,30 @@ public class Event<C extends EventContent> {
     private final String persistentEventId;
     private final EventType<C> type;
     private final C content;
+    private final byte[] payload;
 
     public Event(String persistentEventId, EventType<C> type, C content) {
+        this(persistentEventId, type, content, null);
+    }
+
+    /**
+     * @param persistentEventId Persistent ID of the event, null if it is not persisted
+     * @param type              type of the event
+     * @param content           content of the event, may be null if {@code payload} is set
+     * @param payload           the content serialized to JSON in UTF-8, sent as is. It must not be modified afterwards.
+     */
+    public Event(String persistentEventId, EventType<C> type, C content, byte[] payload) {
         this.persistentEventId = persistentEventId;
         this.type = type;
         this.content = content;
+        this.payload = payload;
+    }
+
+    /**
+     * @return a copy of this event with the given Persistent ID
+     */
+    public Event<C> withPersistentEventId(String persistentEventId) {
+        return new Event<>(persistentEventId, type, content, payload);
     }
 
     public String getPersistentEventId() {
@@ -33,16 +53,24 @@ public class Event<C extends EventContent> {
         return content;
     }
 
+    /**
+     * @return the content serialized to JSON in UTF-8, or null if the content has not been serialized. It must not be
+     * modified.
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Event<?> event = (Event<?>) o;
-        return Objects.equals(type, event.type) && Objects.equals(content, event.content);
+        return Objects.equals(type, event.type) && Objects.equals(content, event.content) && Arrays.equals(payload, event.payload);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(type, content);
+        return 31 * Objects.hash(type, content) + Arrays.hashCode(payload);
     }
 }
@@ -0,0 +1,30 @@
+package org.coderclan.whistle;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Flux;
+
+import java.util.function.Supplier;
+
+/**
+ * Supplier bound to the output of a lane of {@link LaneEventSender}, registered by {@link WhistleConfiguration} for
+ * every lane but the default one. The {@link EventSender} is looked up when the binding starts, once all beans are
+ * created.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+public class EventLaneSupplier implements Supplier<Flux<Message<?>>> {
+    private final BeanFactory beanFactory;
+    private final String lane;
+
+    public EventLaneSupplier(BeanFactory beanFactory, String lane) {
+        this.beanFactory = beanFactory;
+        this.lane = lane;
+    }
+
+    @Override
+    public Flux<Message<?>> get() {
+        EventSender eventSender = beanFactory.getBean(EventSender.class);
+        return eventSender instanceof LaneEventSender ? ((LaneEventSender) eventSender).asFlux(lane) : Flux.never();
+    }
+}
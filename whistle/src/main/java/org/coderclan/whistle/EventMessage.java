@@ -0,0 +1,57 @@
+package org.coderclan.whistle;
+
+import net.jcip.annotations.Immutable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Lightweight {@link Message} of an event, built from the header template of its {@link EventTypeDescriptor}.
+ * Unlike the messages built by {@link org.springframework.messaging.support.MessageBuilder}, its headers are copied
+ * once from the template, and carry neither an {@code id} (no UUID is generated) nor a {@code timestamp}.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@Immutable
+public final class EventMessage<T> implements Message<T> {
+    private final T payload;
+    private final MessageHeaders headers;
+
+    /**
+     * @param payload           payload of the message
+     * @param template          headers shared by the messages of the event type, not modified
+     * @param persistentEventId Persistent ID of the event, null if it is not persisted
+     */
+    EventMessage(T payload, Map<String, Object> template, String persistentEventId) {
+        this.payload = Objects.requireNonNull(payload, "payload must not be null");
+        this.headers = new EventMessageHeaders(template, persistentEventId);
+    }
+
+    @Override
+    public T getPayload() {
+        return payload;
+    }
+
+    @Override
+    public MessageHeaders getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public String toString() {
+        return "EventMessage [payload=" + payload + ", headers=" + headers + "]";
+    }
+
+    private static final class EventMessageHeaders extends MessageHeaders {
+        private static final long serialVersionUID = 1L;
+
+        private EventMessageHeaders(Map<String, Object> template, String persistentEventId) {
+            super(template, ID_VALUE_NONE, -1L);
+            if (Objects.nonNull(persistentEventId)) {
+                getRawHeaders().put(Constants.EVENT_PERSISTENT_ID_HEADER, persistentEventId);
+            }
+        }
+    }
+}
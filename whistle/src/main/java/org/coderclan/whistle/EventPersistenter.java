@@ -3,6 +3,8 @@ package org.coderclan.whistle;
 import org.coderclan.whistle.api.EventContent;
 import org.coderclan.whistle.api.EventType;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -16,6 +18,31 @@ public interface EventPersistenter {
      */
     <C extends EventContent> String persistEvent(EventType<C> type, C content);
 
+    /**
+     * Persist the type and content of the given event.
+     *
+     * @param event event to persist, its persistent event ID is ignored
+     * @return Persisted Event ID
+     */
+    default <C extends EventContent> String persistEvent(Event<C> event) {
+        return persistEvent(event.getType(), event.getContent());
+    }
+
+    /**
+     * Persist all events published in one transaction. The default implementation persists the events one by one,
+     * implementations should override it to write all events in one round trip.
+     *
+     * @param events events to persist, in publishing order
+     * @return Persisted Event IDs, in the same order as {@code events}
+     */
+    default List<String> persistEvents(List<Event<?>> events) {
+        List<String> ids = new ArrayList<>(events.size());
+        for (Event<?> event : events) {
+            ids.add(persistEvent(event));
+        }
+        return ids;
+    }
+
     /**
      * Mark event as successfully delivered.
      *
@@ -23,5 +50,91 @@ public interface EventPersistenter {
      */
     void confirmEvent(String persistentEventId);
 
+    /**
+     * Mark events as successfully delivered. The default implementation confirms the events one by one,
+     * implementations should override it to confirm all events in one round trip.
+     *
+     * @param persistentEventIds IDs of the events to confirm
+     */
+    default void confirmEvents(Collection<String> persistentEventIds) {
+        for (String persistentEventId : persistentEventIds) {
+            confirmEvent(persistentEventId);
+        }
+    }
+
     List<Event<?>> retrieveUnconfirmedEvent();
+
+    /**
+     * Retrieve at most {@code count} unconfirmed events. The default implementation ignores {@code count}
+     * and delegates to {@link #retrieveUnconfirmedEvent()}.
+     *
+     * @param count the maximum number of events to retrieve
+     * @return retrieved events
+     */
+    default List<Event<?>> retrieveUnconfirmedEvent(int count) {
+        return retrieveUnconfirmedEvent();
+    }
+
+    /**
+     * Retrieve at most {@code count} unconfirmed events of one shard: the events whose ID modulo {@code shardCount}
+     * is {@code shard}. The default implementation ignores the shard.
+     *
+     * @param count      the maximum number of events to retrieve
+     * @param shard      the shard, from 0 to {@code shardCount - 1}
+     * @param shardCount the number of shards
+     * @return retrieved events
+     */
+    default List<Event<?>> retrieveUnconfirmedEvent(int count, int shard, int shardCount) {
+        return retrieveUnconfirmedEvent(count);
+    }
+
+    /**
+     * @return {@code true} if {@link #retrieveUnconfirmedEvent(int, int, int)} only retrieves the events of the shard
+     */
+    default boolean supportsShardedRetrieval() {
+        return false;
+    }
+
+    /**
+     * Return the registry of the leases coordinating the nodes, e.g. the shards of the retrier.
+     *
+     * @return the lease registry, or {@code null} if not supported
+     */
+    default LeaseRegistry getLeaseRegistry() {
+        return null;
+    }
+
+    /**
+     * Make an event whose first delivery failed (e.g. it was rejected by the broker) due for re-delivery at once,
+     * instead of after its lease expires. Events which were already re-delivered keep their backoff.
+     * The default implementation does nothing.
+     *
+     * @param persistentEventId Persistent ID of the event
+     */
+    default void releaseEvent(String persistentEventId) {
+    }
+
+    /**
+     * Delete at most {@code limit} confirmed events which were confirmed more than {@code retention} seconds ago.
+     * The default implementation deletes nothing.
+     *
+     * @param retention retention of confirmed events, in seconds
+     * @param limit     maximum number of events deleted by this call
+     * @return number of deleted events
+     */
+    default int purgeConfirmedEvents(int retention, int limit) {
+        return 0;
+    }
+
+    /**
+     * Maintain the time partitions of the events: create partitions ahead of time and drop expired partitions
+     * which hold no unconfirmed event. The default implementation does nothing.
+     *
+     * @param retention retention of confirmed events, in seconds. 0 means partitions are never dropped
+     * @return {@code true} if events are stored in time partitions, so that retention is handled by dropping partitions
+     * instead of {@link #purgeConfirmedEvents(int, int)}
+     */
+    default boolean maintainPartitions(int retention) {
+        return false;
+    }
 }
@@ -10,5 +10,9 @@ import reactor.core.publisher.Flux;
 public interface EventSender {
     void send(Event<? extends EventContent> event);
 
-    Flux<Message<EventContent>> asFlux();
+    /**
+     * @return the messages to send. The payload is the {@link Event#getPayload()} with a JSON content type if the
+     * event carries one, the content otherwise.
+     */
+    Flux<Message<?>> asFlux();
 }
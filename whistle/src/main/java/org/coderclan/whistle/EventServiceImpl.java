@@ -10,6 +10,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
 /**
  * @author aray(dot)chou(dot)cn(at)gmail(dot)com
  */
@@ -20,30 +23,82 @@ public class EventServiceImpl implements EventService {
     private final EventPersistenter eventPersistenter;
     private final TransactionalEventHandler transactionalEventHandler;
     private final EventSender eventSender;
+    private final boolean deferredPersistence;
+    private final boolean relay;
+    private final EventContentSerializer serializer;
 
     public EventServiceImpl(
             @Autowired(required = false) EventPersistenter eventPersistenter,
             @Autowired TransactionalEventHandler transactionalEventHandler,
             @Autowired EventSender eventSender) {
+        this(eventPersistenter, transactionalEventHandler, eventSender, null);
+    }
+
+    /**
+     * @param eventPersistenter         persistenter, may be null if there is no database
+     * @param transactionalEventHandler handler of the events published in a transaction
+     * @param eventSender               sender of the events published without a transaction
+     * @param properties                Whistle configuration, may be null to use the defaults
+     */
+    public EventServiceImpl(
+            @Autowired(required = false) EventPersistenter eventPersistenter,
+            @Autowired TransactionalEventHandler transactionalEventHandler,
+            @Autowired EventSender eventSender,
+            @Autowired(required = false) WhistleConfigurationProperties properties) {
+        this(eventPersistenter, transactionalEventHandler, eventSender, properties, null);
+    }
+
+    /**
+     * @param eventPersistenter         persistenter, may be null if there is no database
+     * @param transactionalEventHandler handler of the events published in a transaction
+     * @param eventSender               sender of the events published without a transaction
+     * @param properties                Whistle configuration, may be null to use the defaults
+     * @param serializer                serializer of the payload of the events if {@code rawPayload} is set, may be null
+     */
+    public EventServiceImpl(
+            @Autowired(required = false) EventPersistenter eventPersistenter,
+            @Autowired TransactionalEventHandler transactionalEventHandler,
+            @Autowired EventSender eventSender,
+            @Autowired(required = false) WhistleConfigurationProperties properties,
+            @Autowired(required = false) EventContentSerializer serializer) {
         this.eventPersistenter = eventPersistenter;
         this.transactionalEventHandler = transactionalEventHandler;
         this.eventSender = eventSender;
+        this.deferredPersistence = Objects.nonNull(properties) && properties.isDeferredPersistence();
+        this.relay = Objects.nonNull(properties) && properties.getDeliveryMode() == DeliveryMode.RELAY;
+        this.serializer = Objects.nonNull(properties) && properties.isRawPayload() ? serializer : null;
     }
 
     @Override
     public <C extends EventContent> void publishEvent(EventType<C> type, C content) {
         log.debug("Try to send event: eventType={}, content={}", type, content);
 
+        Event<C> event = newEvent(type, content);
         if (TransactionSynchronizationManager.isActualTransactionActive()) {
-            String persistentEventId = eventPersistenter.persistEvent(type, content);
-            transactionalEventHandler.addEvent(new Event<>(persistentEventId, type, content));
+            if (deferredPersistence) {
+                // persisted together with the other events of the transaction right before committing.
+                transactionalEventHandler.addEventToPersist(event);
+                return;
+            }
+            String persistentEventId = eventPersistenter.persistEvent(event);
+            if (relay) {
+                // published from the persistent table by the relay.
+                return;
+            }
+            transactionalEventHandler.addEvent(event.withPersistentEventId(persistentEventId));
         } else {
             log.info("Transaction is not active, send event without persisting!");
-            this.send(type, content);
+            eventSender.send(event);
         }
     }
 
-    private <C extends EventContent> void send(EventType<C> type, C content) {
-        eventSender.send(new Event<>(null, type, content));
+    /**
+     * Serialize the content once if {@code rawPayload} is set, the payload is both persisted and sent.
+     */
+    private <C extends EventContent> Event<C> newEvent(EventType<C> type, C content) {
+        if (Objects.isNull(serializer)) {
+            return new Event<>(null, type, content);
+        }
+        return new Event<>(null, type, content, serializer.toJson(content).getBytes(StandardCharsets.UTF_8));
     }
 }
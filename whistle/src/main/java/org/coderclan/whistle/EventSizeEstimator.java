@@ -0,0 +1,36 @@
+package org.coderclan.whistle;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Estimate the size of an outgoing event without serializing it: the length of its payload if it carries one,
+ * otherwise the length of the last payload seen for its event type, otherwise {@link #DEFAULT_SIZE}.
+ * Events published by this node carry their payload; events re-delivered from the persistent table may not.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class EventSizeEstimator implements ToIntFunction<Event<?>> {
+    /**
+     * Estimated size of an event of a type whose payload was never seen, in bytes.
+     */
+    public static final int DEFAULT_SIZE = 1024;
+
+    private final Map<String, Integer> lastSizes = new ConcurrentHashMap<>();
+
+    @Override
+    public int applyAsInt(Event<?> event) {
+        String type = event.getType().getName();
+        byte[] payload = event.getPayload();
+        if (Objects.nonNull(payload)) {
+            lastSizes.put(type, payload.length);
+            return payload.length;
+        }
+        return lastSizes.getOrDefault(type, DEFAULT_SIZE);
+    }
+}
@@ -0,0 +1,130 @@
+package org.coderclan.whistle;
+
+import net.jcip.annotations.Immutable;
+import org.coderclan.whistle.api.EventType;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * What is computed once per {@link EventType} to send its events: the destination and the header templates of its
+ * messages. Held by {@link EventTypeRegistrar#getDescriptor(EventType)}.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@Immutable
+public final class EventTypeDescriptor {
+    static final String DESTINATION_HEADER = "spring.cloud.stream.sendto.destination";
+    private static final String OUTPUT_BINDING_PREFIX = "whistle-";
+    private static final String OUTPUT_BINDING_SUFFIX = "-out-0";
+
+    private final EventType<?> type;
+    /**
+     * Name of the output binding of the type, if it is pre-bound, see {@link #getOutputBinding()}.
+     */
+    private final String outputBinding;
+    /**
+     * Headers of the messages whose payload is the event content.
+     */
+    private final Map<String, Object> headers;
+    /**
+     * Headers of the messages whose payload is the pre-serialized JSON of the event.
+     */
+    private final Map<String, Object> rawHeaders;
+    /**
+     * Headers of the messages sent to the output binding of the type, without destination.
+     */
+    private static final Map<String, Object> BOUND_HEADERS = Collections.emptyMap();
+    private static final Map<String, Object> BOUND_RAW_HEADERS = Collections.singletonMap(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON_VALUE);
+
+    EventTypeDescriptor(EventType<?> type) {
+        this.type = type;
+        this.outputBinding = outputBindingName(type.getName()) + OUTPUT_BINDING_SUFFIX;
+
+        Map<String, Object> h = new HashMap<>(4);
+        h.put(DESTINATION_HEADER, type.getName());
+        this.headers = Collections.unmodifiableMap(h);
+
+        Map<String, Object> raw = new HashMap<>(h);
+        raw.putAll(BOUND_RAW_HEADERS);
+        this.rawHeaders = Collections.unmodifiableMap(raw);
+    }
+
+    /**
+     * Name of the output binding declared for an event type (in {@code spring.cloud.stream.output-bindings}), the
+     * binding itself is named {@code <name>-out-0}. Characters which are not allowed in property names are replaced,
+     * with a hash of the type name to keep the names unique.
+     *
+     * @param typeName name of the event type
+     * @return name of the output binding, without the {@code -out-0} suffix
+     */
+    static String outputBindingName(String typeName) {
+        String name = typeName.replaceAll("[^A-Za-z0-9_]", "_");
+        if (!name.equals(typeName)) {
+            name = name + "_" + Integer.toHexString(typeName.hashCode());
+        }
+        return OUTPUT_BINDING_PREFIX + name;
+    }
+
+    public EventType<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return name of the destination of the events, the name of the event type
+     */
+    public String getDestination() {
+        return type.getName();
+    }
+
+    /**
+     * @return name of the output binding of the type, used if its destination is pre-bound, see
+     * {@link StreamBridgeEventSender}
+     */
+    public String getOutputBinding() {
+        return outputBinding;
+    }
+
+    /**
+     * Pre-serialized payloads are sent as is, with a JSON content type, so that the binder does not convert them again.
+     *
+     * @param event event of this type
+     * @return message of the event
+     */
+    public Message<?> toMessage(Event<?> event) {
+        if (Objects.isNull(event.getPayload())) {
+            return new EventMessage<>(event.getContent(), headers, event.getPersistentEventId());
+        }
+        return new EventMessage<>(event.getPayload(), rawHeaders, event.getPersistentEventId());
+    }
+
+    /**
+     * Same as {@link #toMessage(Event)}, without the destination header, for the messages sent to an output binding.
+     *
+     * @param event event of this type
+     * @return message of the event
+     */
+    public Message<?> toBoundMessage(Event<?> event) {
+        if (Objects.isNull(event.getPayload())) {
+            return new EventMessage<>(event.getContent(), BOUND_HEADERS, event.getPersistentEventId());
+        }
+        return new EventMessage<>(event.getPayload(), BOUND_RAW_HEADERS, event.getPersistentEventId());
+    }
+
+    /**
+     * Same as {@link #toBoundMessage(Event)}, for a message built by {@link #toMessage(Event)}, e.g. taken from the
+     * queue of outgoing events.
+     *
+     * @param message message of an event
+     * @return the message without destination
+     */
+    static Message<?> toBoundMessage(Message<?> message) {
+        Map<String, Object> template = message.getHeaders().containsKey(MessageHeaders.CONTENT_TYPE) ? BOUND_RAW_HEADERS : BOUND_HEADERS;
+        return new EventMessage<>(message.getPayload(), template, message.getHeaders().get(Constants.EVENT_PERSISTENT_ID_HEADER, String.class));
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.CollectionUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 /**
@@ -25,11 +26,17 @@ public class EventTypeRegistrar {
      */
     private final Map<String, EventType<?>> eventTypeMap;
 
+    /**
+     * Key: eventType name, value: descriptor. Created up front for the registered types, on first use for the others.
+     */
+    private final Map<String, EventTypeDescriptor> descriptors = new ConcurrentHashMap<>();
+
 
     public EventTypeRegistrar(@Autowired(required = false) List<Collection<? extends EventType<?>>> publishingEventType,
                               @Autowired(required = false) List<EventConsumer<?>> consumers
     ) {
         this.eventTypeMap = this.toMap(publishingEventType, consumers);
+        this.eventTypeMap.forEach((name, type) -> descriptors.put(name, new EventTypeDescriptor(type)));
     }
 
     /**
@@ -71,4 +78,13 @@ public class EventTypeRegistrar {
         }
         return eventTypeMap.get(type);
     }
+
+    /**
+     * @param type event type
+     * @return the descriptor of the event type
+     */
+    public EventTypeDescriptor getDescriptor(EventType<?> type) {
+        EventTypeDescriptor descriptor = descriptors.get(type.getName());
+        return Objects.nonNull(descriptor) ? descriptor : descriptors.computeIfAbsent(type.getName(), name -> new EventTypeDescriptor(type));
+    }
 }
@@ -1,5 +1,6 @@
 package org.coderclan.whistle;
 
+import org.coderclan.whistle.exception.EventRetrievalException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
@@ -9,9 +10,13 @@ import org.springframework.context.ApplicationListener;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 
 /**
  * Retrieve un-ACKed Events and append them to the Sending Queues.
@@ -24,13 +29,33 @@ public class FailedEventRetrier implements ApplicationListener<ApplicationStarte
     private final WhistleConfigurationProperties properties;
 
     private final EventPersistenter eventPersistenter;
-    private ScheduledExecutorService scheduler;
+    private volatile ScheduledExecutorService scheduler;
     private final EventSender eventSender;
+    private final RetryNotificationSource notificationSource;
+    private final AtomicBoolean wakeUpRequested = new AtomicBoolean();
+    private final List<Runnable> workers = new CopyOnWriteArrayList<>();
+    private LeaseRegistry leaderLeaseRegistry;
+    private String leaderLeaseName;
+    private volatile boolean leader = true;
+    private volatile boolean sharded;
+    /**
+     * Until when this node tracks the due times for the cluster, after it retried the first shard.
+     */
+    private volatile long firstShardHeldUntil;
 
     public FailedEventRetrier(@Autowired(required = false) EventPersistenter eventPersistenter, @Autowired EventSender eventSender, @Autowired WhistleConfigurationProperties properties) {
+        this(eventPersistenter, eventSender, properties, null);
+    }
+
+    /**
+     * @param notificationSource source of wake-up notifications, may be null to retry by polling only
+     */
+    public FailedEventRetrier(@Autowired(required = false) EventPersistenter eventPersistenter, @Autowired EventSender eventSender, @Autowired WhistleConfigurationProperties properties,
+                              @Autowired(required = false) RetryNotificationSource notificationSource) {
         this.eventPersistenter = eventPersistenter;
         this.eventSender = eventSender;
         this.properties = properties;
+        this.notificationSource = notificationSource;
     }
 
     @Override
@@ -39,38 +64,213 @@ public class FailedEventRetrier implements ApplicationListener<ApplicationStarte
             return;
         }
 
-        log.info("Delay for retrying to deliver un-confirmed event is: {}s", this.properties.getRetryDelay());
+        int delay = Objects.isNull(notificationSource) ? this.properties.getRetryDelay() : this.properties.getSafetyPollInterval();
+        log.info("Delay for retrying to deliver un-confirmed event is: {}s", delay);
+        log.info("Retry batch size: {}, adaptive: {}", this.properties.getRetryBatchSize(), this.properties.isAdaptiveRetryBatch());
+
+        int shardCount = this.properties.getRetryShards();
+        boolean sharded = shardCount > 1 && eventPersistenter.supportsShardedRetrieval();
+        LeaseRegistry leaseRegistry = sharded ? eventPersistenter.getLeaseRegistry() : null;
+        if (shardCount > 1 && Objects.isNull(leaseRegistry)) {
+            log.warn("Sharded retry is not supported by {}, retrying without shards.", eventPersistenter.getClass().getSimpleName());
+        }
+        if (this.properties.isRetryLeaderElection()) {
+            electLeader();
+        }
+
+        int leaderThreads = Objects.isNull(leaderLeaseRegistry) ? 0 : 1;
+        if (Objects.isNull(leaseRegistry)) {
+            this.scheduler = Executors.newScheduledThreadPool(1 + leaderThreads);
+            this.workers.add(new EventRetrierRunnable());
+        } else {
+            int threads = Math.max(1, this.properties.getRetryThreads());
+            log.info("Retrying in {} shard(s) with {} thread(s).", shardCount, threads);
+            this.sharded = true;
+            this.scheduler = Executors.newScheduledThreadPool(threads + leaderThreads);
+            for (int i = 0; i < threads; i++) {
+                this.workers.add(new ShardRetrierRunnable(leaseRegistry, this.properties.getNodeId() + "#" + i, shardCount));
+            }
+        }
+        if (Objects.nonNull(leaderLeaseRegistry)) {
+            int renewInterval = Math.max(1, this.properties.getLeaderLeaseDuration() / 3);
+            this.scheduler.scheduleWithFixedDelay(this::renewLeadership, 0, renewInterval, TimeUnit.SECONDS);
+        }
+        for (Runnable worker : workers) {
+            this.scheduler.scheduleWithFixedDelay(worker, 0, delay, TimeUnit.SECONDS);
+        }
+        if (Objects.nonNull(notificationSource)) {
+            notificationSource.start(this::wakeUp, this::tracksDueTime);
+        }
+    }
 
-        this.scheduler = Executors.newScheduledThreadPool(1);
-        EventRetrierRunnable runnable = new EventRetrierRunnable();
-        this.scheduler.scheduleWithFixedDelay(runnable, 0, this.properties.getRetryDelay(), TimeUnit.SECONDS);
+    /**
+     * Whether this node tracks the due times of the persisted events for the cluster: the retry leader, or with
+     * sharded retry, the node which last retried the first shard. Other nodes are woken up by notifications and by
+     * polling only.
+     */
+    private boolean tracksDueTime() {
+        return leader && (!sharded || System.currentTimeMillis() < firstShardHeldUntil);
     }
 
-    private class EventRetrierRunnable implements Runnable {
+    private void electLeader() {
+        LeaseRegistry registry = eventPersistenter.getLeaseRegistry();
+        if (Objects.isNull(registry)) {
+            log.warn("Leader election is not supported by {}, every node retries.", eventPersistenter.getClass().getSimpleName());
+            return;
+        }
+        this.leaderLeaseRegistry = registry;
+        this.leaderLeaseName = this.properties.getPersistentTableName() + ":leader";
+        this.leader = false;
+        log.info("Only the leader retries, leader lease '{}' lasts {}s.", leaderLeaseName, this.properties.getLeaderLeaseDuration());
+    }
+
+    /**
+     * Acquire or renew the leader lease every third of its duration. A node which becomes the leader retries at once.
+     */
+    private void renewLeadership() {
+        try {
+            boolean acquired = leaderLeaseRegistry.tryAcquire(leaderLeaseName, this.properties.getNodeId(), Math.max(1, this.properties.getLeaderLeaseDuration()));
+            if (acquired != leader) {
+                log.info("Node '{}' {} the retry leader.", this.properties.getNodeId(), acquired ? "is now" : "is no longer");
+            }
+            boolean elected = acquired && !leader;
+            leader = acquired;
+            if (elected) {
+                wakeUp();
+            }
+        } catch (Exception e) {
+            log.error("Exception countered when renewing the retry leader lease.", e);
+        }
+    }
+
+    /**
+     * Retry as soon as possible, e.g. because events were released for re-delivery.
+     * Wake-ups requested while a wake-up is pending are coalesced.
+     */
+    public void wakeUp() {
+        ScheduledExecutorService s = this.scheduler;
+        if (Objects.isNull(s) || !wakeUpRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            s.execute(() -> {
+                wakeUpRequested.set(false);
+                for (Runnable worker : workers) {
+                    s.execute(worker);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Wake-up ignored, the retrier is shut down.");
+        }
+    }
+
+    /**
+     * A retrier worker. A run is skipped if the previous run of the same worker is still in progress,
+     * e.g. when it is woken up while draining.
+     */
+    private abstract class AbstractRetrierRunnable implements Runnable {
+        protected final RetryBatchSizer batchSizer = new RetryBatchSizer(properties);
+        private final AtomicBoolean running = new AtomicBoolean();
+
         @Override
         public void run() {
+            if (!leader || !running.compareAndSet(false, true)) {
+                return;
+            }
             try {
-                List<Event<?>> events;
-                do {
-                    events = eventPersistenter.retrieveUnconfirmedEvent();
-                    if (Objects.isNull(events))
-                        return;
-                    for (Event<?> e : events) {
-                        eventSender.send(e);
-                    }
-                } while (events.size() == Constants.RETRY_BATCH_COUNT);
+                retry();
+            } catch (EventRetrievalException e) {
+                batchSizer.onContention();
+                log.warn("Lock contention when retrying the failed events, retry batch size is now {}: {}", batchSizer.getBatchSize(), e.getMessage());
             } catch (Exception e) {
                 log.error("Exception countered when retrying the failed events.", e);
+            } finally {
+                running.set(false);
+            }
+        }
+
+        protected abstract void retry();
+
+        /**
+         * Retry batches of the shard until the backlog is drained or {@code keepGoing} returns false.
+         */
+        protected void drain(int shard, int shardCount, BooleanSupplier keepGoing) {
+            List<Event<?>> events;
+            int count;
+            do {
+                count = batchSizer.getBatchSize();
+                long start = System.nanoTime();
+                events = shardCount > 1 ? eventPersistenter.retrieveUnconfirmedEvent(count, shard, shardCount) : eventPersistenter.retrieveUnconfirmedEvent(count);
+                if (Objects.isNull(events))
+                    return;
+                for (Event<?> e : events) {
+                    eventSender.send(e);
+                }
+                batchSizer.onBatch(events.size(), System.nanoTime() - start);
+            } while (events.size() >= count && keepGoing.getAsBoolean());
+        }
+    }
+
+    private class EventRetrierRunnable extends AbstractRetrierRunnable {
+        @Override
+        protected void retry() {
+            drain(0, 1, () -> true);
+        }
+    }
+
+    /**
+     * Walk through the shards, starting from a different shard for each worker, and drain the shards whose lease
+     * could be acquired. Shards leased by other workers (of this node or of other nodes) are skipped, so that the
+     * workers never contend for the same rows.
+     */
+    private class ShardRetrierRunnable extends AbstractRetrierRunnable {
+        private final LeaseRegistry leaseRegistry;
+        private final String holder;
+        private final int shardCount;
+        private final int offset;
+
+        private ShardRetrierRunnable(LeaseRegistry leaseRegistry, String holder, int shardCount) {
+            this.leaseRegistry = leaseRegistry;
+            this.holder = holder;
+            this.shardCount = shardCount;
+            this.offset = Math.floorMod(holder.hashCode(), shardCount);
+        }
+
+        @Override
+        protected void retry() {
+            int leaseDuration = Math.max(1, properties.getLeaseDuration());
+            for (int i = 0; i < shardCount; i++) {
+                int shard = (offset + i) % shardCount;
+                String leaseName = properties.getPersistentTableName() + ":shard:" + shard;
+                if (!leaseRegistry.tryAcquire(leaseName, holder, leaseDuration)) {
+                    continue;
+                }
+                if (shard == 0) {
+                    firstShardHeldUntil = System.currentTimeMillis() + (leaseDuration + (long) properties.getSafetyPollInterval()) * 1000L;
+                }
+                try {
+                    log.trace("Retrying shard {}/{} as {}", shard, shardCount, holder);
+                    drain(shard, shardCount, () -> leaseRegistry.tryAcquire(leaseName, holder, leaseDuration));
+                } finally {
+                    leaseRegistry.release(leaseName, holder);
+                }
             }
         }
     }
 
     @Override
     public void destroy() {
+        if (notificationSource != null) {
+            notificationSource.stop();
+        }
         if (scheduler != null) {
             scheduler.shutdownNow();
             log.info("FailedEventRetrier scheduler shut down.");
         }
+        if (leaderLeaseRegistry != null && leader) {
+            // let another node take over at once instead of after the lease expired.
+            leaderLeaseRegistry.release(leaderLeaseName, this.properties.getNodeId());
+        }
     }
 
 }
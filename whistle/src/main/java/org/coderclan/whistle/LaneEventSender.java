@@ -0,0 +1,106 @@
+package org.coderclan.whistle;
+
+import net.jcip.annotations.ThreadSafe;
+import org.coderclan.whistle.api.EventContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link EventSender} dispatching the events to lanes, so that a slow or blocked destination only delays the event
+ * types of its own lane. Each lane has its own queue (an {@link EventSender}), its own supplier binding (see
+ * {@link EventLaneSupplier}), and its own thread handing the events to the binder. Event types which are not assigned
+ * to a lane go to the default lane, bound to the {@code cloudStreamSupplier}.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class LaneEventSender implements EventSender, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(LaneEventSender.class);
+    static final String DEFAULT_LANE = "default";
+
+    /**
+     * Key: lane name, value: queue of the lane. Immutable.
+     */
+    private final Map<String, EventSender> lanes;
+    /**
+     * Key: eventType name, value: queue of the lane of the type. Immutable.
+     */
+    private final Map<String, EventSender> typeLanes;
+    private final EventSender defaultLane;
+    /**
+     * Key: lane name, value: messages of the lane, published on the thread of the lane. Immutable.
+     */
+    private final Map<String, Flux<Message<?>>> fluxes;
+    private final List<Scheduler> schedulers = new ArrayList<>();
+
+    /**
+     * @param lanes      key: lane name, value: queue of the lane, including the {@link #DEFAULT_LANE default lane}
+     * @param typeLanes  key: eventType name, value: lane name, the types which are not listed go to the default lane
+     * @param bufferSize number of messages prefetched by the thread of a lane
+     */
+    public LaneEventSender(Map<String, EventSender> lanes, Map<String, String> typeLanes, int bufferSize) {
+        this.lanes = Collections.unmodifiableMap(new LinkedHashMap<>(lanes));
+        this.defaultLane = Objects.requireNonNull(lanes.get(DEFAULT_LANE), "The default lane must be configured");
+
+        Map<String, EventSender> types = new HashMap<>();
+        typeLanes.forEach((type, lane) -> types.put(type, Objects.requireNonNull(lanes.get(lane), "Unknown lane: " + lane)));
+        this.typeLanes = Collections.unmodifiableMap(types);
+
+        Map<String, Flux<Message<?>>> f = new HashMap<>();
+        this.lanes.forEach((lane, sender) -> {
+            Scheduler scheduler = Schedulers.newSingle("whistle-lane-" + lane);
+            schedulers.add(scheduler);
+            f.put(lane, sender.asFlux().publishOn(scheduler, Math.max(1, bufferSize)));
+        });
+        this.fluxes = Collections.unmodifiableMap(f);
+        log.info("Outgoing events are dispatched to lanes: lanes={}, eventTypes={}", this.lanes.keySet(), typeLanes);
+    }
+
+    /**
+     * @return messages of the default lane
+     */
+    @Override
+    public Flux<Message<?>> asFlux() {
+        return fluxes.get(DEFAULT_LANE);
+    }
+
+    /**
+     * @param lane lane name
+     * @return messages of the lane, a Flux which never emits if there is no such lane
+     */
+    public Flux<Message<?>> asFlux(String lane) {
+        Flux<Message<?>> flux = fluxes.get(lane);
+        return Objects.isNull(flux) ? Flux.never() : flux;
+    }
+
+    @Override
+    public void send(Event<? extends EventContent> event) {
+        EventSender lane = typeLanes.get(event.getType().getName());
+        (Objects.isNull(lane) ? defaultLane : lane).send(event);
+    }
+
+    /**
+     * @return key: lane name, value: queue of the lane
+     */
+    public Map<String, EventSender> getLanes() {
+        return lanes;
+    }
+
+    @Override
+    public void destroy() {
+        schedulers.forEach(Scheduler::dispose);
+    }
+}
@@ -0,0 +1,27 @@
+package org.coderclan.whistle;
+
+/**
+ * Time-limited, named leases shared by the nodes of a cluster, e.g. a row per lease in a database table.
+ * A lease is held by at most one holder at a time; it can be taken over by another holder once it expired.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+public interface LeaseRegistry {
+    /**
+     * Acquire the lease, or renew it if it is already held by {@code holder}.
+     *
+     * @param name     name of the lease
+     * @param holder   identifier of the holder, unique in the cluster
+     * @param duration duration of the lease, in seconds
+     * @return {@code true} if {@code holder} holds the lease for {@code duration} seconds from now
+     */
+    boolean tryAcquire(String name, String holder, int duration);
+
+    /**
+     * Release the lease if it is held by {@code holder}, so that other holders can acquire it at once.
+     *
+     * @param name   name of the lease
+     * @param holder identifier of the holder
+     */
+    void release(String name, String holder);
+}
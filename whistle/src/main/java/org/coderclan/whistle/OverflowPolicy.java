@@ -0,0 +1,20 @@
+package org.coderclan.whistle;
+
+/**
+ * What {@link BoundedEventSender} does with an event when its queue is full. Persisted events are always dropped from
+ * memory, whatever the policy: they are still in the persistent table, and are re-delivered by
+ * {@link FailedEventRetrier} once their lease expired.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+public enum OverflowPolicy {
+    /**
+     * Drop the event. Events which are not persisted are lost.
+     */
+    DROP,
+    /**
+     * Throw {@link org.coderclan.whistle.exception.EventQueueFullException} for the events which are not persisted,
+     * so that the publisher is aware of the loss.
+     */
+    FAIL
+}
@@ -0,0 +1,61 @@
+package org.coderclan.whistle;
+
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link EventPersistenter}, for reactive stacks. {@link #persistEvent(EventType, EventContent)}
+ * joins the current reactive transaction of the subscriber context.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+public interface ReactiveEventPersistenter {
+    /**
+     * @param type
+     * @param content
+     * @return Persisted Event ID
+     */
+    <C extends EventContent> Mono<String> persistEvent(EventType<C> type, C content);
+
+    /**
+     * Persist the type and content of the given event.
+     *
+     * @param event event to persist, its persistent event ID is ignored
+     * @return Persisted Event ID
+     */
+    default <C extends EventContent> Mono<String> persistEvent(Event<C> event) {
+        return persistEvent(event.getType(), event.getContent());
+    }
+
+    /**
+     * Mark events as successfully delivered.
+     *
+     * @param persistentEventIds IDs of the events to confirm
+     * @return completion
+     */
+    Mono<Void> confirmEvents(Collection<String> persistentEventIds);
+
+    /**
+     * Claim at most {@code count} unconfirmed events which are due for re-delivery.
+     *
+     * @param count the maximum number of events to retrieve
+     * @return retrieved events
+     */
+    Mono<List<Event<?>>> retrieveUnconfirmedEvent(int count);
+
+    /**
+     * Delete at most {@code limit} confirmed events which were confirmed more than {@code retention} seconds ago.
+     * The default implementation deletes nothing.
+     *
+     * @param retention retention of confirmed events, in seconds
+     * @param limit     maximum number of events deleted by this call
+     * @return number of deleted events
+     */
+    default Mono<Integer> purgeConfirmedEvents(int retention, int limit) {
+        return Mono.just(0);
+    }
+}
@@ -0,0 +1,23 @@
+package org.coderclan.whistle;
+
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link org.coderclan.whistle.api.EventService}, for reactive stacks.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+public interface ReactiveEventService {
+    /**
+     * Publish an event. In a reactive transaction, the event is persisted in the transaction and sent after it
+     * committed; otherwise it is sent without being persisted.
+     *
+     * @param type
+     * @param content
+     * @param <C>     EventContent
+     * @return completion, once the event is persisted (in a transaction) or queued for sending
+     */
+    <C extends EventContent> Mono<Void> publishEvent(EventType<C> type, C content);
+}
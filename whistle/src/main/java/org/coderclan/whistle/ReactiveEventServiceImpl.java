@@ -0,0 +1,122 @@
+package org.coderclan.whistle;
+
+import net.jcip.annotations.ThreadSafe;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Queue;
+
+/**
+ * Publish events in reactive transactions. The events of a transaction are bound to it as a transaction resource and
+ * handed to the {@link EventSender} by a reactive {@link TransactionSynchronization} after the commit, so that nothing
+ * blocks the event loop.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class ReactiveEventServiceImpl implements ReactiveEventService {
+    private static final Logger log = LoggerFactory.getLogger(ReactiveEventServiceImpl.class);
+
+    private final ReactiveEventPersistenter eventPersistenter;
+    private final EventSender eventSender;
+    private final boolean sendAfterCommit;
+    private final EventContentSerializer serializer;
+
+    /**
+     * @param eventPersistenter persistenter joining the reactive transactions
+     * @param eventSender       sender used after the transactions committed
+     * @param properties        Whistle configuration, may be null to use the defaults
+     */
+    public ReactiveEventServiceImpl(ReactiveEventPersistenter eventPersistenter, EventSender eventSender, WhistleConfigurationProperties properties) {
+        this(eventPersistenter, eventSender, properties, null);
+    }
+
+    /**
+     * @param eventPersistenter persistenter joining the reactive transactions
+     * @param eventSender       sender used after the transactions committed
+     * @param properties        Whistle configuration, may be null to use the defaults
+     * @param serializer        serializer of the payload of the events if {@code rawPayload} is set, may be null
+     */
+    public ReactiveEventServiceImpl(ReactiveEventPersistenter eventPersistenter, EventSender eventSender, WhistleConfigurationProperties properties,
+                                    EventContentSerializer serializer) {
+        this.eventPersistenter = eventPersistenter;
+        this.eventSender = eventSender;
+        this.sendAfterCommit = Objects.isNull(properties) || properties.getDeliveryMode() != DeliveryMode.RELAY;
+        this.serializer = Objects.nonNull(properties) && properties.isRawPayload() ? serializer : null;
+    }
+
+    @Override
+    public <C extends EventContent> Mono<Void> publishEvent(EventType<C> type, C content) {
+        log.debug("Try to send event: eventType={}, content={}", type, content);
+        return Mono.fromCallable(() -> newEvent(type, content))
+                .flatMap(event -> TransactionSynchronizationManager.forCurrentTransaction()
+                        .filter(TransactionSynchronizationManager::isActualTransactionActive)
+                        .onErrorResume(NoTransactionException.class, e -> Mono.empty())
+                        .flatMap(synchronizationManager -> eventPersistenter.persistEvent(event)
+                                .doOnNext(persistentEventId -> addEvent(synchronizationManager, event.withPersistentEventId(persistentEventId))))
+                        .switchIfEmpty(Mono.fromRunnable(() -> {
+                            log.info("Transaction is not active, send event without persisting!");
+                            eventSender.send(event);
+                        })))
+                .then();
+    }
+
+    /**
+     * Serialize the content once if {@code rawPayload} is set, the payload is both persisted and sent.
+     */
+    private <C extends EventContent> Event<C> newEvent(EventType<C> type, C content) {
+        if (Objects.isNull(serializer)) {
+            return new Event<>(null, type, content);
+        }
+        return new Event<>(null, type, content, serializer.toJson(content).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addEvent(TransactionSynchronizationManager synchronizationManager, Event<?> event) {
+        if (!sendAfterCommit) {
+            // published from the persistent table by the relay.
+            return;
+        }
+        Queue<Event<?>> events = (Queue<Event<?>>) synchronizationManager.getResource(this);
+        if (Objects.isNull(events)) {
+            events = new ArrayDeque<>();
+            synchronizationManager.bindResource(this, events);
+            synchronizationManager.registerSynchronization(new SendingSynchronization(synchronizationManager, events));
+        }
+        events.add(event);
+    }
+
+    private class SendingSynchronization implements TransactionSynchronization {
+        private final TransactionSynchronizationManager synchronizationManager;
+        private final Queue<Event<?>> events;
+
+        private SendingSynchronization(TransactionSynchronizationManager synchronizationManager, Queue<Event<?>> events) {
+            this.synchronizationManager = synchronizationManager;
+            this.events = events;
+        }
+
+        @Override
+        public Mono<Void> afterCompletion(int status) {
+            synchronizationManager.unbindResourceIfPossible(ReactiveEventServiceImpl.this);
+            if (STATUS_COMMITTED == status) {
+                try {
+                    for (Event<?> event : events) {
+                        eventSender.send(event);
+                    }
+                } catch (Exception e) {
+                    log.error("Sending failed.", e);
+                }
+            }
+            return Mono.empty();
+        }
+    }
+}
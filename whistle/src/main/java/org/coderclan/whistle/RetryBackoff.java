@@ -0,0 +1,56 @@
+package org.coderclan.whistle;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Exponential backoff of the re-delivery of an event: {@code min(backoffMax, backoffBase * backoffMultiplier ^ retriedCount)}
+ * seconds, with an equal jitter (the delay is randomly reduced by up to a half) so that events which failed together
+ * are not retried together.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@Immutable
+public class RetryBackoff {
+    private final int base;
+    private final double multiplier;
+    private final int max;
+    private final int maxExponent;
+
+    public RetryBackoff(WhistleConfigurationProperties properties) {
+        this.base = Math.max(1, properties.getBackoffBase());
+        this.multiplier = Math.max(1.0, properties.getBackoffMultiplier());
+        this.max = Math.max(this.base, properties.getBackoffMax());
+        // the exponent beyond which the delay is capped, so that the power never overflows
+        this.maxExponent = this.multiplier <= 1.0 ? 0 : (int) Math.ceil(Math.log((double) this.max / this.base) / Math.log(this.multiplier));
+    }
+
+    /**
+     * @param retriedCount number of times the event has been re-delivered
+     * @param random       random number in [0, 1)
+     * @return delay of the next re-delivery, in seconds
+     */
+    public double getDelaySeconds(int retriedCount, double random) {
+        int exponent = Math.min(Math.max(0, retriedCount), maxExponent);
+        double delay = Math.min(max, base * Math.pow(multiplier, exponent));
+        return delay * (0.5 + 0.5 * random);
+    }
+
+    public int getBase() {
+        return base;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return the largest exponent which does not reach {@link #getMax()} yet, larger retried counts are capped to it
+     */
+    public int getMaxExponent() {
+        return maxExponent;
+    }
+}
@@ -0,0 +1,73 @@
+package org.coderclan.whistle;
+
+import net.jcip.annotations.NotThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decide how many unconfirmed events are retrieved per retry transaction.
+ * <p>
+ * In fixed mode the batch size is always {@code retryBatchSize}. In adaptive mode the batch size is doubled (up to
+ * {@code maxRetryBatchSize}) after every full batch retrieved and sent within the latency target, and halved (down to 1)
+ * when a batch exceeds the target or fails because of lock contention, so that a large backlog is drained quickly
+ * without holding locks for long.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@NotThreadSafe
+public class RetryBatchSizer {
+    private static final Logger log = LoggerFactory.getLogger(RetryBatchSizer.class);
+
+    private final boolean adaptive;
+    private final int maxBatchSize;
+    private final long latencyTargetNanos;
+    private int batchSize;
+
+    public RetryBatchSizer(WhistleConfigurationProperties properties) {
+        this.adaptive = properties.isAdaptiveRetryBatch();
+        this.batchSize = Math.max(1, properties.getRetryBatchSize());
+        this.maxBatchSize = Math.max(this.batchSize, properties.getMaxRetryBatchSize());
+        this.latencyTargetNanos = properties.getRetryBatchLatencyTarget() * 1_000_000L;
+    }
+
+    /**
+     * @return number of events to retrieve by the next retry transaction
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Record a completed batch.
+     *
+     * @param retrieved    number of events retrieved
+     * @param elapsedNanos time spent retrieving and sending the batch
+     */
+    public void onBatch(int retrieved, long elapsedNanos) {
+        if (!adaptive) {
+            return;
+        }
+        if (elapsedNanos > latencyTargetNanos) {
+            shrink();
+        } else if (retrieved >= batchSize && batchSize < maxBatchSize) {
+            batchSize = (int) Math.min(maxBatchSize, batchSize * 2L);
+            log.debug("Retry batch size grown to {}", batchSize);
+        }
+    }
+
+    /**
+     * Record a batch which failed because of lock contention or a query timeout.
+     */
+    public void onContention() {
+        if (adaptive) {
+            shrink();
+        }
+    }
+
+    private void shrink() {
+        if (batchSize > 1) {
+            batchSize = batchSize / 2;
+            log.debug("Retry batch size shrunk to {}", batchSize);
+        }
+    }
+}
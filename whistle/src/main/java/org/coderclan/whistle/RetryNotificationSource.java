@@ -0,0 +1,36 @@
+package org.coderclan.whistle;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Source of notifications that persisted events may be due for re-delivery, e.g. a database notification channel.
+ * When available, {@link FailedEventRetrier} is woken up by the notifications, and its periodic polling becomes a
+ * safety net.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+public interface RetryNotificationSource {
+    /**
+     * Start listening.
+     *
+     * @param listener called, from a thread of the source, whenever events may be due
+     */
+    void start(Runnable listener);
+
+    /**
+     * Start listening. A source which also wakes the listener when persisted events become due (e.g. when a lease
+     * expires) only tracks the due times while {@code tracksDueTime} returns true, so that one node of the cluster
+     * tracks them instead of every node.
+     *
+     * @param listener      called, from a thread of the source, whenever events may be due
+     * @param tracksDueTime whether this node tracks the due times, e.g. because it is the retry leader
+     */
+    default void start(Runnable listener, BooleanSupplier tracksDueTime) {
+        start(listener);
+    }
+
+    /**
+     * Stop listening and release the resources of the source.
+     */
+    void stop();
+}
@@ -4,6 +4,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.support.ErrorMessage;
 
@@ -16,9 +18,20 @@ public class ServiceActivators {
     private static final Logger log = LoggerFactory.getLogger(ServiceActivators.class);
 
     private final EventPersistenter persistenter;
+    private final ConfirmCoalescer confirmCoalescer;
 
     public ServiceActivators(@Autowired(required = false) EventPersistenter persistenter) {
+        this(persistenter, null);
+    }
+
+    /**
+     * @param persistenter     persistenter, may be null if there is no database
+     * @param confirmCoalescer coalescer used to confirm events asynchronously, may be null to confirm synchronously
+     */
+    public ServiceActivators(@Autowired(required = false) EventPersistenter persistenter,
+                             @Autowired(required = false) ConfirmCoalescer confirmCoalescer) {
         this.persistenter = persistenter;
+        this.confirmCoalescer = confirmCoalescer;
     }
 
 
@@ -34,7 +47,19 @@ public class ServiceActivators {
     ) {
         boolean success = Objects.equals(confirmed, Boolean.TRUE) || !(Objects.isNull(recordMetadata));
         log.trace("Confirm received. persistentId={}, confirmed={}", persistentId, success);
-        if (Objects.nonNull(persistentId) && success && !Objects.isNull(this.persistenter)) {
+        if (Objects.isNull(persistentId)) {
+            return;
+        }
+        if (!success) {
+            if (Objects.equals(confirmed, Boolean.FALSE) && Objects.nonNull(this.persistenter)) {
+                // negative acknowledgement, re-deliver as soon as possible instead of waiting for the lease.
+                this.persistenter.releaseEvent(persistentId);
+            }
+            return;
+        }
+        if (Objects.nonNull(this.confirmCoalescer)) {
+            this.confirmCoalescer.confirm(persistentId);
+        } else if (Objects.nonNull(this.persistenter)) {
             this.persistenter.confirmEvent(persistentId);
         }
     }
@@ -42,5 +67,13 @@ public class ServiceActivators {
     @ServiceActivator(inputChannel = "errorChannel")
     public void errors(ErrorMessage error) {
         log.error("Error countered", error.getPayload());
+        if (Objects.isNull(this.persistenter) || !(error.getPayload() instanceof MessagingException)) {
+            return;
+        }
+        Message<?> failedMessage = ((MessagingException) error.getPayload()).getFailedMessage();
+        Object persistentId = Objects.isNull(failedMessage) ? null : failedMessage.getHeaders().get(Constants.EVENT_PERSISTENT_ID_HEADER);
+        if (Objects.nonNull(persistentId)) {
+            this.persistenter.releaseEvent(persistentId.toString());
+        }
     }
 }
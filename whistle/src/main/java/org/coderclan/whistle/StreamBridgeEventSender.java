@@ -0,0 +1,145 @@
+package org.coderclan.whistle;
+
+import net.jcip.annotations.ThreadSafe;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.ApplicationListener;
+import org.springframework.messaging.Message;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link EventSender} sending the events of the publishing event types to their own output binding, declared by
+ * {@link WhistleConfiguration} so that the bindings are created at startup, instead of routing them through the
+ * {@code spring.cloud.stream.sendto.destination} header of the supplier, which lets the binder resolve (and, on the
+ * first event of a type, create) the binding of every message.
+ * <p>
+ * With a queue, events are queued by the calling thread, and a single thread drains the queue to the bindings once the
+ * application started, so that a slow binder does not delay the publishing (and committing) threads. Without a queue,
+ * events are sent on the calling thread. Events of other types are sent to a dynamic destination named after their
+ * type. Send failures are logged, persisted events are re-delivered by {@link FailedEventRetrier}.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class StreamBridgeEventSender implements EventSender, ApplicationListener<ApplicationStartedEvent>, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(StreamBridgeEventSender.class);
+
+    private final StreamBridge streamBridge;
+    private final EventTypeRegistrar eventTypeRegistrar;
+    /**
+     * Key: eventType name, value: output binding name. Immutable.
+     */
+    private final Map<String, String> outputBindings;
+    /**
+     * Queue of outgoing events, null if the events are sent on the calling thread.
+     */
+    private final EventSender queue;
+    private Scheduler scheduler;
+    private Disposable drain;
+
+    /**
+     * Send the events on the calling thread.
+     *
+     * @param streamBridge       bridge to the bindings
+     * @param eventTypeRegistrar provides the per event type message templates
+     * @param boundTypes         event types whose output binding is declared
+     */
+    public StreamBridgeEventSender(StreamBridge streamBridge, EventTypeRegistrar eventTypeRegistrar, Collection<? extends EventType<?>> boundTypes) {
+        this(streamBridge, eventTypeRegistrar, boundTypes, null);
+    }
+
+    /**
+     * @param streamBridge       bridge to the bindings
+     * @param eventTypeRegistrar provides the per event type message templates
+     * @param boundTypes         event types whose output binding is declared
+     * @param queue              queue of outgoing events, e.g. {@link BoundedEventSender}, drained to the bindings by a
+     *                           thread of its own, or null to send the events on the calling thread
+     */
+    public StreamBridgeEventSender(StreamBridge streamBridge, EventTypeRegistrar eventTypeRegistrar, Collection<? extends EventType<?>> boundTypes,
+                                   EventSender queue) {
+        this.streamBridge = streamBridge;
+        this.eventTypeRegistrar = eventTypeRegistrar;
+        this.queue = queue;
+        Map<String, String> bindings = new HashMap<>();
+        if (Objects.nonNull(boundTypes)) {
+            for (EventType<?> type : boundTypes) {
+                bindings.put(type.getName(), eventTypeRegistrar.getDescriptor(type).getOutputBinding());
+            }
+        }
+        this.outputBindings = Collections.unmodifiableMap(bindings);
+        log.info("Events are sent to pre-bound output bindings: {}", outputBindings);
+    }
+
+    /**
+     * @return a Flux which never emits, the events are not sent through the supplier.
+     */
+    @Override
+    public Flux<Message<?>> asFlux() {
+        return Flux.never();
+    }
+
+    @Override
+    public void send(Event<? extends EventContent> event) {
+        if (Objects.nonNull(queue)) {
+            queue.send(event);
+            return;
+        }
+        EventTypeDescriptor descriptor = eventTypeRegistrar.getDescriptor(event.getType());
+        send(descriptor.getDestination(), descriptor.toBoundMessage(event));
+    }
+
+    /**
+     * Start draining the queue, the bindings are created by then.
+     */
+    @Override
+    public synchronized void onApplicationEvent(ApplicationStartedEvent event) {
+        if (Objects.isNull(queue) || Objects.nonNull(drain)) {
+            return;
+        }
+        scheduler = Schedulers.newSingle("whistle-stream-bridge");
+        drain = queue.asFlux().publishOn(scheduler).subscribe(message -> send(
+                (String) message.getHeaders().get(EventTypeDescriptor.DESTINATION_HEADER), EventTypeDescriptor.toBoundMessage(message)));
+        log.info("Outgoing events are queued and sent to the output bindings by a dedicated thread.");
+    }
+
+    private void send(String typeName, Message<?> message) {
+        String binding = outputBindings.get(typeName);
+        String destination = Objects.isNull(binding) ? typeName : binding;
+        try {
+            if (!streamBridge.send(destination, message)) {
+                log.warn("Event not sent: destination={}, persistentEventId={}", destination, message.getHeaders().get(Constants.EVENT_PERSISTENT_ID_HEADER));
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to send event: destination={}, persistentEventId={}", destination, message.getHeaders().get(Constants.EVENT_PERSISTENT_ID_HEADER), e);
+        }
+    }
+
+    /**
+     * @return queue of outgoing events, null if the events are sent on the calling thread
+     */
+    public EventSender getQueue() {
+        return queue;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (Objects.nonNull(drain)) {
+            drain.dispose();
+            scheduler.dispose();
+        }
+    }
+}
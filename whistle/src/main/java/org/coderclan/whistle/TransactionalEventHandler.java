@@ -8,12 +8,18 @@ import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Queue;
+import java.util.stream.Collectors;
 
 /**
  * Handle the Event produced in a Database Transaction.
  * The event handled by this handler will be added into the Sending Queue after The Transaction committing.
+ * Events added by {@link #addEventToPersist(Event)} are persisted with one {@link EventPersistenter#persistEvents(List)}
+ * call right before The Transaction commits.
+ * If the events are delivered by the relay, they are only persisted.
  *
  * @author aray(dot)chou(dot)cn(at)gmail(dot)com
  */
@@ -23,9 +29,30 @@ public class TransactionalEventHandler {
     private static final ThreadLocal<Queue<Event<?>>> message = new ThreadLocal<>();
 
     private final EventSender eventSender;
+    private final EventPersistenter eventPersistenter;
+    private final boolean sendAfterCommit;
 
     public TransactionalEventHandler(EventSender eventSender) {
+        this(eventSender, null);
+    }
+
+    /**
+     * @param eventSender       sender used after The Transaction committed
+     * @param eventPersistenter persistenter used to persist deferred events before The Transaction commits, may be null
+     */
+    public TransactionalEventHandler(EventSender eventSender, EventPersistenter eventPersistenter) {
+        this(eventSender, eventPersistenter, true);
+    }
+
+    /**
+     * @param eventSender       sender used after The Transaction committed
+     * @param eventPersistenter persistenter used to persist deferred events before The Transaction commits, may be null
+     * @param sendAfterCommit   false if the events are delivered by the relay instead of being sent after The Transaction committed
+     */
+    public TransactionalEventHandler(EventSender eventSender, EventPersistenter eventPersistenter, boolean sendAfterCommit) {
         this.eventSender = eventSender;
+        this.eventPersistenter = eventPersistenter;
+        this.sendAfterCommit = sendAfterCommit;
     }
 
     /**
@@ -48,6 +75,44 @@ public class TransactionalEventHandler {
         message.get().add(event);
     }
 
+    /**
+     * Add an event which has not been persisted yet. All such events of The Transaction are persisted in one batch
+     * right before The Transaction commits, a persistence failure rolls The Transaction back.
+     *
+     * @param event event without persistent event ID
+     * @throws IllegalStateException if there is no {@link EventPersistenter}
+     */
+    public void addEventToPersist(Event<?> event) {
+        if (Objects.isNull(eventPersistenter)) {
+            throw new IllegalStateException("There is no EventPersistenter to persist the event.");
+        }
+        addEvent(event);
+    }
+
+    /**
+     * Persist the events which have no persistent event ID, and replace them in the queue (keeping the order) with
+     * the persisted ones.
+     */
+    private void persistDeferredEvents(Queue<Event<?>> q) {
+        if (q == null || q.isEmpty()) {
+            return;
+        }
+        List<Event<?>> pending = q.stream()
+                .filter(e -> Objects.isNull(e.getPersistentEventId()))
+                .collect(Collectors.toList());
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        logger.trace("persistDeferredEvents() — persisting {} event(s)", pending.size());
+        Iterator<String> ids = eventPersistenter.persistEvents(pending).iterator();
+        int size = q.size();
+        for (int i = 0; i < size; i++) {
+            Event<?> event = q.poll();
+            q.add(Objects.isNull(event.getPersistentEventId()) ? event.withPersistentEventId(ids.next()) : event);
+        }
+    }
+
 
     private TransactionSynchronization transactionSynchronization = new TransactionSynchronization() {
         @Override
@@ -67,7 +132,8 @@ public class TransactionalEventHandler {
 
         @Override
         public void beforeCommit(boolean readOnly) {
-            // DO NOTHING
+            // exceptions thrown here roll The Transaction back, so the events are never lost.
+            persistDeferredEvents(message.get());
         }
 
         @Override
@@ -84,7 +150,7 @@ public class TransactionalEventHandler {
         public void afterCompletion(int status) {
             try {
                 // put events into the Sending Queue
-                if (STATUS_COMMITTED == status) {
+                if (STATUS_COMMITTED == status && sendAfterCommit) {
                     Queue<Event<?>> q = message.get();
                     sendEvent(q);
                 }
@@ -1,37 +1,51 @@
 package org.coderclan.whistle;
 
 import org.coderclan.whistle.api.EventConsumer;
-import org.coderclan.whistle.api.EventContent;
 import org.coderclan.whistle.api.EventService;
 import org.coderclan.whistle.api.EventType;
+import org.coderclan.whistle.rdbms.AbstractRdbmsEventPersistenter;
 import org.coderclan.whistle.rdbms.H2EventPersistenter;
 import org.coderclan.whistle.rdbms.MysqlEventPersistenter;
 import org.coderclan.whistle.rdbms.OracleEventPersistenter;
+import org.coderclan.whistle.rdbms.OutboxRelay;
 import org.coderclan.whistle.rdbms.PostgresqlEventPersistenter;
+import org.coderclan.whistle.rdbms.PostgresqlRetryNotificationListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.SingletonBeanRegistry;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.messaging.Message;
+import org.springframework.util.CollectionUtils;
 import reactor.core.publisher.Flux;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.StringJoiner;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -40,10 +54,11 @@ import java.util.stream.Collectors;
 @Configuration
 @PropertySource(value = "classpath:org/coderclan/whistle/spring-cloud-stream.properties", encoding = "UTF-8")
 @EnableConfigurationProperties(WhistleConfigurationProperties.class)
-@AutoConfigureAfter(name = {"org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration", "org.springframework.boot.jdbc.autoconfigure.DataSourceAutoConfiguration", "org.coderclan.whistle.WhistleMongodbConfiguration"})
+@AutoConfigureAfter(name = {"org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration", "org.springframework.boot.jdbc.autoconfigure.DataSourceAutoConfiguration", "org.coderclan.whistle.WhistleMongodbConfiguration", "org.coderclan.whistle.WhistleReactiveMongodbConfiguration", "org.coderclan.whistle.WhistleR2dbcConfiguration"})
 public class WhistleConfiguration implements ApplicationContextAware, InitializingBean {
     private static final Logger log = LoggerFactory.getLogger(WhistleConfiguration.class);
     private static final String CLOUD_STREAM_SUPPLIER = "cloudStreamSupplier";
+    private static final String LANE_SUPPLIER_PREFIX = "whistleLane_";
 
     private final List<EventConsumer<?>> consumers;
     private final List<Collection<? extends EventType<?>>> publishingEventType;
@@ -68,7 +83,9 @@ public class WhistleConfiguration implements ApplicationContextAware, Initializi
     @Override
     public void afterPropertiesSet() {
         checkApplicationName();
+        checkPreBindDestinations();
         registerEventConsumers();
+        registerOutputBindings();
         checkEventType();
     }
 
@@ -100,14 +117,27 @@ public class WhistleConfiguration implements ApplicationContextAware, Initializi
         log.info("Whistle Application Name: {}.", applicationName);
     }
 
+    /**
+     * Lanes are supplier bindings, which are not used when the events are sent to pre-bound output bindings.
+     */
+    private void checkPreBindDestinations() {
+        if (this.properties.isPreBindDestinations() && !CollectionUtils.isEmpty(this.properties.getSenderLanes())) {
+            throw new IllegalStateException("senderLanes can not be used together with preBindDestinations, lanes: " + this.properties.getSenderLanes().keySet());
+        }
+    }
+
     private void registerEventConsumers() {
 
-        StringBuilder beanNamesStr = new StringBuilder(CLOUD_STREAM_SUPPLIER);
+        // the cloudStreamSupplier is not registered when the events are sent to pre-bound output bindings.
+        StringJoiner beanNamesStr = new StringJoiner(";");
+        if (!this.properties.isPreBindDestinations()) {
+            beanNamesStr.add(CLOUD_STREAM_SUPPLIER);
+        }
 
         String[] consumerBeanNames =
                 this.applicationContext.getBeanNamesForType(EventConsumer.class);
         for (String consumerBeanName : consumerBeanNames) {
-            beanNamesStr.append(';').append(consumerBeanName);
+            beanNamesStr.add(consumerBeanName);
 
             EventConsumer<?> c = (EventConsumer<?>) this.applicationContext.getBean(consumerBeanName);
             String topicName = c.getSupportEventType().getName();
@@ -116,10 +146,63 @@ public class WhistleConfiguration implements ApplicationContextAware, Initializi
             System.setProperty("spring.cloud.stream.function.bindings." + consumerBeanName + "-in-0", topicName);
         }
 
-        System.setProperty("spring.cloud.function.definition", beanNamesStr.toString());
+        for (String laneSupplierBeanName : registerLaneSuppliers()) {
+            beanNamesStr.add(laneSupplierBeanName);
+        }
+
+        if (beanNamesStr.length() > 0) {
+            System.setProperty("spring.cloud.function.definition", beanNamesStr.toString());
+        }
         System.setProperty("spring.cloud.stream.default.group", this.properties.getApplicationName());
     }
 
+    /**
+     * Register one {@link EventLaneSupplier} per lane, see {@link LaneEventSender}.
+     *
+     * @return bean names of the suppliers
+     */
+    private List<String> registerLaneSuppliers() {
+        if (!isLaneEnabled()) {
+            return Collections.emptyList();
+        }
+        SingletonBeanRegistry registry = (SingletonBeanRegistry) this.applicationContext.getAutowireCapableBeanFactory();
+        List<String> beanNames = new ArrayList<>();
+        for (String lane : this.properties.getSenderLanes().keySet()) {
+            if (LaneEventSender.DEFAULT_LANE.equals(lane)) {
+                continue;
+            }
+            String beanName = LANE_SUPPLIER_PREFIX + lane.replaceAll("[^A-Za-z0-9_]", "_");
+            if (!registry.containsSingleton(beanName)) {
+                registry.registerSingleton(beanName, new EventLaneSupplier(this.applicationContext, lane));
+            }
+            beanNames.add(beanName);
+        }
+        return beanNames;
+    }
+
+    private boolean isLaneEnabled() {
+        return !CollectionUtils.isEmpty(this.properties.getSenderLanes());
+    }
+
+    /**
+     * Declare the output bindings of the publishing event types, see {@link StreamBridgeEventSender}.
+     */
+    private void registerOutputBindings() {
+        if (!this.properties.isPreBindDestinations() || Objects.isNull(this.publishingEventType)) {
+            return;
+        }
+        StringJoiner bindingNames = new StringJoiner(";");
+        this.publishingEventType.stream().flatMap(Collection::stream).map(EventType::getName).distinct().forEach(topicName -> {
+            String bindingName = EventTypeDescriptor.outputBindingName(topicName);
+            bindingNames.add(bindingName);
+
+            //-Dspring.cloud.stream.bindings.whistle-xxx-out-0.destination=xxx
+            System.setProperty("spring.cloud.stream.bindings." + bindingName + "-out-0.destination", topicName);
+        });
+        System.setProperty("spring.cloud.stream.output-bindings", bindingNames.toString());
+        log.info("Output bindings declared: {}", bindingNames);
+    }
+
     @Bean("mysqlEventPersistenter")
     @ConditionalOnClass(name = "com.mysql.cj.jdbc.Driver")
     @ConditionalOnBean(DataSource.class)
@@ -129,7 +212,7 @@ public class WhistleConfiguration implements ApplicationContextAware, Initializi
             @Autowired EventContentSerializer serializer,
             @Autowired EventTypeRegistrar eventTypeRegistrar
     ) {
-        return new MysqlEventPersistenter(dataSource, serializer, eventTypeRegistrar, this.properties.getPersistentTableName(), this.properties.getRetrieveTransactionTimeout());
+        return new MysqlEventPersistenter(dataSource, serializer, eventTypeRegistrar, this.properties);
     }
 
     @Bean("h2EventPersistenter")
@@ -141,7 +224,7 @@ public class WhistleConfiguration implements ApplicationContextAware, Initializi
             @Autowired EventContentSerializer serializer,
             @Autowired EventTypeRegistrar eventTypeRegistrar
     ) {
-        return new H2EventPersistenter(dataSource, serializer, eventTypeRegistrar, this.properties.getPersistentTableName(), this.properties.getRetrieveTransactionTimeout());
+        return new H2EventPersistenter(dataSource, serializer, eventTypeRegistrar, this.properties);
     }
 
     @Bean("postgresqlEventPersistenter")
@@ -153,7 +236,7 @@ public class WhistleConfiguration implements ApplicationContextAware, Initializi
             @Autowired EventContentSerializer serializer,
             @Autowired EventTypeRegistrar eventTypeRegistrar
     ) {
-        return new PostgresqlEventPersistenter(dataSource, serializer, eventTypeRegistrar, this.properties.getPersistentTableName(), this.properties.getRetrieveTransactionTimeout());
+        return new PostgresqlEventPersistenter(dataSource, serializer, eventTypeRegistrar, this.properties);
     }
 
     @Bean("oracleEventPersistenter")
@@ -164,14 +247,46 @@ public class WhistleConfiguration implements ApplicationContextAware, Initializi
             @Autowired DataSource dataSource,
             @Autowired EventContentSerializer serializer,
             @Autowired EventTypeRegistrar eventTypeRegistrar) {
-        return new OracleEventPersistenter(dataSource, serializer, eventTypeRegistrar, this.properties.getPersistentTableName(), this.properties.getRetrieveTransactionTimeout());
+        return new OracleEventPersistenter(dataSource, serializer, eventTypeRegistrar, this.properties);
+    }
+
+    @Bean
+    @ConditionalOnBean({EventPersistenter.class})
+    @ConditionalOnMissingBean
+    public FailedEventRetrier failedEventRetrier(@Autowired EventPersistenter persistenter, @Autowired EventSender eventSender,
+                                                 @Autowired(required = false) RetryNotificationSource retryNotificationSource) {
+        return new FailedEventRetrier(persistenter, eventSender, this.properties, retryNotificationSource);
+    }
+
+    @Bean
+    @ConditionalOnClass(name = "org.postgresql.PGConnection")
+    @ConditionalOnBean({EventPersistenter.class, DataSource.class})
+    @ConditionalOnProperty(prefix = "org.coderclan.whistle", name = "retry-notification", havingValue = "true")
+    @ConditionalOnMissingBean
+    public RetryNotificationSource retryNotificationSource(@Autowired DataSource dataSource, @Autowired EventPersistenter persistenter) {
+        if (!(persistenter instanceof PostgresqlEventPersistenter)) {
+            throw new IllegalStateException("retryNotification is only supported by PostgreSQL, persistenter: " + persistenter.getClass().getName());
+        }
+        return new PostgresqlRetryNotificationListener(dataSource, (PostgresqlEventPersistenter) persistenter,
+                this.properties.getRetryDelay() * 1000, this.properties.getSafetyPollInterval() * 1000);
     }
 
     @Bean
     @ConditionalOnBean({EventPersistenter.class})
+    @ConditionalOnProperty(prefix = "org.coderclan.whistle", name = "delivery-mode", havingValue = "relay")
     @ConditionalOnMissingBean
-    public FailedEventRetrier failedEventRetrier(@Autowired EventPersistenter persistenter, @Autowired EventSender eventSender) {
-        return new FailedEventRetrier(persistenter, eventSender, this.properties);
+    public OutboxRelay outboxRelay(@Autowired EventPersistenter persistenter, @Autowired EventSender eventSender) {
+        if (!(persistenter instanceof AbstractRdbmsEventPersistenter)) {
+            throw new IllegalStateException("Relay delivery mode is only supported by relational databases, persistenter: " + persistenter.getClass().getName());
+        }
+        return new OutboxRelay((AbstractRdbmsEventPersistenter) persistenter, eventSender, this.properties);
+    }
+
+    @Bean
+    @ConditionalOnBean({EventPersistenter.class})
+    @ConditionalOnMissingBean
+    public ConfirmedEventPurger confirmedEventPurger(@Autowired EventPersistenter persistenter) {
+        return new ConfirmedEventPurger(persistenter, this.properties);
     }
 
     @Bean
@@ -179,14 +294,24 @@ public class WhistleConfiguration implements ApplicationContextAware, Initializi
     public EventService eventService(
             @Autowired(required = false) EventPersistenter eventPersistenter,
             @Autowired TransactionalEventHandler transactionalEventHandler,
-            @Autowired EventSender eventSender) {
-        return new EventServiceImpl(eventPersistenter, transactionalEventHandler, eventSender);
+            @Autowired EventSender eventSender,
+            @Autowired(required = false) EventContentSerializer serializer) {
+        return new EventServiceImpl(eventPersistenter, transactionalEventHandler, eventSender, this.properties, serializer);
+    }
+
+    @Bean
+    @ConditionalOnClass(name = "org.springframework.transaction.reactive.TransactionSynchronizationManager")
+    @ConditionalOnBean(ReactiveEventPersistenter.class)
+    @ConditionalOnMissingBean
+    public ReactiveEventService reactiveEventService(@Autowired ReactiveEventPersistenter reactiveEventPersistenter, @Autowired EventSender eventSender,
+                                                     @Autowired(required = false) EventContentSerializer serializer) {
+        return new ReactiveEventServiceImpl(reactiveEventPersistenter, eventSender, this.properties, serializer);
     }
 
     @Bean
     @ConditionalOnMissingBean
-    public TransactionalEventHandler transactionEventHandler(@Autowired EventSender eventSender) {
-        return new TransactionalEventHandler(eventSender);
+    public TransactionalEventHandler transactionEventHandler(@Autowired EventSender eventSender, @Autowired(required = false) EventPersistenter eventPersistenter) {
+        return new TransactionalEventHandler(eventSender, eventPersistenter, this.properties.getDeliveryMode() != DeliveryMode.RELAY);
     }
 
     @Bean
@@ -195,21 +320,61 @@ public class WhistleConfiguration implements ApplicationContextAware, Initializi
         return new EventTypeRegistrar(publishingEventType, consumers);
     }
 
+    @Bean
+    @ConditionalOnBean({EventPersistenter.class})
+    @ConditionalOnProperty(prefix = "org.coderclan.whistle", name = "async-confirm", havingValue = "true")
+    @ConditionalOnMissingBean
+    public ConfirmCoalescer confirmCoalescer(@Autowired EventPersistenter persistenter) {
+        return new ConfirmCoalescer(persistenter, this.properties.getConfirmBatchSize(), this.properties.getConfirmFlushInterval());
+    }
+
     @Bean
     @ConditionalOnMissingBean
-    ServiceActivators cloudStreamConfig(@Autowired(required = false) EventPersistenter persistenter) {
-        return new ServiceActivators(persistenter);
+    ServiceActivators cloudStreamConfig(@Autowired(required = false) EventPersistenter persistenter,
+                                        @Autowired(required = false) ConfirmCoalescer confirmCoalescer) {
+        return new ServiceActivators(persistenter, confirmCoalescer);
     }
 
     @Bean
     @ConditionalOnMissingBean
-    public EventSender eventSender() {
-        return new ReactorEventSender();
+    public EventSender eventSender(@Autowired EventTypeRegistrar eventTypeRegistrar, @Autowired ObjectProvider<StreamBridge> streamBridge) {
+        ToIntFunction<Event<?>> sizeEstimator = new EventSizeEstimator();
+        if (this.properties.isPreBindDestinations()) {
+            List<EventType<?>> boundTypes = Objects.isNull(this.publishingEventType) ? Collections.emptyList()
+                    : this.publishingEventType.stream().flatMap(Collection::stream).collect(Collectors.toList());
+            return new StreamBridgeEventSender(streamBridge.getObject(), eventTypeRegistrar, boundTypes, newQueueEventSender(eventTypeRegistrar, sizeEstimator));
+        }
+        if (!isLaneEnabled()) {
+            return newQueueEventSender(eventTypeRegistrar, sizeEstimator);
+        }
+
+        Map<String, EventSender> lanes = new LinkedHashMap<>();
+        Map<String, String> typeLanes = new HashMap<>();
+        lanes.put(LaneEventSender.DEFAULT_LANE, newQueueEventSender(eventTypeRegistrar, sizeEstimator));
+        this.properties.getSenderLanes().forEach((lane, types) -> {
+            lanes.computeIfAbsent(lane, l -> newQueueEventSender(eventTypeRegistrar, sizeEstimator));
+            if (Objects.nonNull(types)) {
+                types.forEach(type -> typeLanes.put(type, lane));
+            }
+        });
+        return new LaneEventSender(lanes, typeLanes, this.properties.getSenderLaneBufferSize());
+    }
+
+    /**
+     * @return the queue of outgoing events, bounded if {@code senderQueueCapacity} is positive
+     */
+    private EventSender newQueueEventSender(EventTypeRegistrar eventTypeRegistrar, ToIntFunction<Event<?>> sizeEstimator) {
+        if (this.properties.getSenderQueueCapacity() > 0) {
+            return new BoundedEventSender(eventTypeRegistrar, this.properties.getSenderQueueCapacity(), this.properties.getSenderQueueMaxBytes(),
+                    this.properties.getSenderOverflowPolicy(), sizeEstimator);
+        }
+        return new ReactorEventSender(eventTypeRegistrar);
     }
 
     @Bean(CLOUD_STREAM_SUPPLIER)
     @ConditionalOnMissingBean(name = CLOUD_STREAM_SUPPLIER)
-    public Supplier<Flux<Message<EventContent>>> cloudStreamSupplier(@Autowired EventSender eventSender) {
+    @ConditionalOnProperty(prefix = "org.coderclan.whistle", name = "pre-bind-destinations", havingValue = "false", matchIfMissing = true)
+    public Supplier<Flux<Message<?>>> cloudStreamSupplier(@Autowired EventSender eventSender) {
         return eventSender::asFlux;
     }
 }
\ No newline at end of file
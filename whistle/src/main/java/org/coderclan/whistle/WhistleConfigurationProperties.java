@@ -3,6 +3,10 @@ package org.coderclan.whistle;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 @ConfigurationProperties("org.coderclan.whistle")
@@ -58,5 +62,654 @@ public class WhistleConfigurationProperties {
         return persistentTableName;
     }
 
+    /**
+     * Persist the events published in a transaction with one batch insert right before the transaction commits,
+     * instead of one insert per {@code publishEvent()} call.
+     * Default: false.
+     */
+    private boolean deferredPersistence = false;
+
+    public boolean isDeferredPersistence() {
+        return deferredPersistence;
+    }
+
+    public void setDeferredPersistence(boolean deferredPersistence) {
+        this.deferredPersistence = deferredPersistence;
+    }
+
+    /**
+     * Confirm broker ACKs asynchronously: ACKs are queued and confirmed in batches by a {@link ConfirmCoalescer},
+     * instead of one database transaction per ACK on the binder's ACK thread.
+     * Default: false.
+     */
+    private boolean asyncConfirm = false;
+
+    /**
+     * Maximum delay of an asynchronous confirmation, in milliseconds.
+     * Default: 100.
+     */
+    private int confirmFlushInterval = 100;
+
+    /**
+     * Maximum number of events confirmed by one asynchronous confirmation statement.
+     * Default: 256.
+     */
+    private int confirmBatchSize = 256;
+
+    public boolean isAsyncConfirm() {
+        return asyncConfirm;
+    }
+
+    public void setAsyncConfirm(boolean asyncConfirm) {
+        this.asyncConfirm = asyncConfirm;
+    }
+
+    public int getConfirmFlushInterval() {
+        return confirmFlushInterval;
+    }
+
+    public void setConfirmFlushInterval(int confirmFlushInterval) {
+        this.confirmFlushInterval = confirmFlushInterval;
+    }
+
+    public int getConfirmBatchSize() {
+        return confirmBatchSize;
+    }
+
+    public void setConfirmBatchSize(int confirmBatchSize) {
+        this.confirmBatchSize = confirmBatchSize;
+    }
+
+    /**
+     * Confirmed events are deleted once they were confirmed longer than this retention, in seconds.
+     * 0 disables the purge.
+     * Default: 0.
+     */
+    private int confirmedEventRetention = 0;
+
+    /**
+     * Maximum number of confirmed events deleted by one statement.
+     * Default: 500.
+     */
+    private int purgeBatchSize = 500;
+
+    /**
+     * Delay between two purge runs, in seconds.
+     * Default: 60.
+     */
+    private int purgeInterval = 60;
+
+    /**
+     * Pause between two purge statements of one run, in milliseconds, so that the purge never holds locks
+     * for long or causes replication lag.
+     * Default: 100.
+     */
+    private int purgeThrottle = 100;
+
+    /**
+     * Delete events when they are confirmed, instead of marking them as confirmed.
+     * Default: false.
+     */
+    private boolean deleteOnConfirm = false;
+
+    public int getConfirmedEventRetention() {
+        return confirmedEventRetention;
+    }
+
+    public void setConfirmedEventRetention(int confirmedEventRetention) {
+        this.confirmedEventRetention = confirmedEventRetention;
+    }
+
+    public int getPurgeBatchSize() {
+        return purgeBatchSize;
+    }
+
+    public void setPurgeBatchSize(int purgeBatchSize) {
+        this.purgeBatchSize = purgeBatchSize;
+    }
+
+    public int getPurgeInterval() {
+        return purgeInterval;
+    }
+
+    public void setPurgeInterval(int purgeInterval) {
+        this.purgeInterval = purgeInterval;
+    }
+
+    public int getPurgeThrottle() {
+        return purgeThrottle;
+    }
+
+    public void setPurgeThrottle(int purgeThrottle) {
+        this.purgeThrottle = purgeThrottle;
+    }
+
+    public boolean isDeleteOnConfirm() {
+        return deleteOnConfirm;
+    }
+
+    public void setDeleteOnConfirm(boolean deleteOnConfirm) {
+        this.deleteOnConfirm = deleteOnConfirm;
+    }
+
+    /**
+     * Create the persistent table range-partitioned by create_time (MySQL and PostgreSQL only), so that expired events
+     * are removed by dropping whole partitions. Only applies when the table is created by Whistle.
+     * Default: false.
+     */
+    private boolean partitionedTable = false;
+
+    /**
+     * Number of days covered by one partition.
+     * Default: 1.
+     */
+    private int partitionInterval = 1;
+
+    /**
+     * Number of partitions created ahead of time, the current one included.
+     * Default: 3.
+     */
+    private int partitionsAhead = 3;
+
+    public boolean isPartitionedTable() {
+        return partitionedTable;
+    }
+
+    public void setPartitionedTable(boolean partitionedTable) {
+        this.partitionedTable = partitionedTable;
+    }
+
+    public int getPartitionInterval() {
+        return partitionInterval;
+    }
 
+    public void setPartitionInterval(int partitionInterval) {
+        this.partitionInterval = partitionInterval;
+    }
+
+    public int getPartitionsAhead() {
+        return partitionsAhead;
+    }
+
+    public void setPartitionsAhead(int partitionsAhead) {
+        this.partitionsAhead = partitionsAhead;
+    }
+
+    /**
+     * Number of unconfirmed events retrieved and re-delivered per retry transaction.
+     * Default: 32.
+     */
+    private int retryBatchSize = Constants.RETRY_BATCH_COUNT;
+
+    /**
+     * Grow the retry batch while retrieving and sending a batch stays within {@code retryBatchLatencyTarget},
+     * shrink it on lock contention, query timeouts or slow batches.
+     * Default: false.
+     */
+    private boolean adaptiveRetryBatch = false;
+
+    /**
+     * Upper bound of the adaptive retry batch size.
+     * Default: 1024.
+     */
+    private int maxRetryBatchSize = 1024;
+
+    /**
+     * Latency target of one adaptive retry batch, in milliseconds.
+     * Default: 500.
+     */
+    private int retryBatchLatencyTarget = 500;
+
+    public int getRetryBatchSize() {
+        return retryBatchSize;
+    }
+
+    public void setRetryBatchSize(int retryBatchSize) {
+        this.retryBatchSize = retryBatchSize;
+    }
+
+    public boolean isAdaptiveRetryBatch() {
+        return adaptiveRetryBatch;
+    }
+
+    public void setAdaptiveRetryBatch(boolean adaptiveRetryBatch) {
+        this.adaptiveRetryBatch = adaptiveRetryBatch;
+    }
+
+    public int getMaxRetryBatchSize() {
+        return maxRetryBatchSize;
+    }
+
+    public void setMaxRetryBatchSize(int maxRetryBatchSize) {
+        this.maxRetryBatchSize = maxRetryBatchSize;
+    }
+
+    public int getRetryBatchLatencyTarget() {
+        return retryBatchLatencyTarget;
+    }
+
+    public void setRetryBatchLatencyTarget(int retryBatchLatencyTarget) {
+        this.retryBatchLatencyTarget = retryBatchLatencyTarget;
+    }
+
+    /**
+     * Duration of the lease taken on a persisted event when it is persisted or claimed for re-delivery, in seconds.
+     * An event is re-delivered only after its lease expired without a confirmation.
+     * Default: 10.
+     */
+    private int leaseDuration = 10;
+
+    /**
+     * Identifier of this node, recorded on the events it claims.
+     * Default: the JVM name ({@code pid@hostname}).
+     */
+    private String nodeId;
+
+    public int getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    public void setLeaseDuration(int leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    public String getNodeId() {
+        if (Objects.isNull(nodeId) || nodeId.isEmpty()) {
+            return ManagementFactory.getRuntimeMXBean().getName();
+        }
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * Delay of the first re-delivery of an event, in seconds. See {@link RetryBackoff}.
+     * Default: 10.
+     */
+    private int backoffBase = 10;
+
+    /**
+     * Factor applied to the re-delivery delay after every attempt.
+     * Default: 2.0.
+     */
+    private double backoffMultiplier = 2.0;
+
+    /**
+     * Upper bound of the re-delivery delay, in seconds.
+     * Default: 3600.
+     */
+    private int backoffMax = 3600;
+
+    public int getBackoffBase() {
+        return backoffBase;
+    }
+
+    public void setBackoffBase(int backoffBase) {
+        this.backoffBase = backoffBase;
+    }
+
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    public void setBackoffMultiplier(double backoffMultiplier) {
+        this.backoffMultiplier = backoffMultiplier;
+    }
+
+    public int getBackoffMax() {
+        return backoffMax;
+    }
+
+    public void setBackoffMax(int backoffMax) {
+        this.backoffMax = backoffMax;
+    }
+
+    /**
+     * Events which still can not be converted (e.g. their event type is no longer registered, or their content can
+     * no longer be deserialized) after this many retries are moved to the dead-letter table (or collection) with their
+     * last error, instead of being retried forever. Events which can be converted are never moved, however many times
+     * they are retried. 0 disables the dead-letter table.
+     * Default: 0.
+     */
+    private int maxRetryCount = 0;
+
+    /**
+     * Name of the dead-letter table (or collection).
+     * Default: the persistent table (or collection) name followed by {@code _dead}.
+     */
+    private String deadLetterTableName;
+
+    public int getMaxRetryCount() {
+        return maxRetryCount;
+    }
+
+    public void setMaxRetryCount(int maxRetryCount) {
+        this.maxRetryCount = maxRetryCount;
+    }
+
+    public String getDeadLetterTableName() {
+        return deadLetterTableName;
+    }
+
+    public void setDeadLetterTableName(String deadLetterTableName) {
+        this.deadLetterTableName = deadLetterTableName;
+    }
+
+    /**
+     * Wake up the retrier by PostgreSQL notifications (LISTEN/NOTIFY) when events are released for re-delivery or
+     * become due, instead of polling every {@code retryDelay} seconds. PostgreSQL only.
+     * Default: false.
+     */
+    private boolean retryNotification = false;
+
+    /**
+     * Polling interval of the retrier when it is woken up by notifications, in seconds.
+     * Default: 300.
+     */
+    private int safetyPollInterval = 300;
+
+    public boolean isRetryNotification() {
+        return retryNotification;
+    }
+
+    public void setRetryNotification(boolean retryNotification) {
+        this.retryNotification = retryNotification;
+    }
+
+    public int getSafetyPollInterval() {
+        return safetyPollInterval;
+    }
+
+    public void setSafetyPollInterval(int safetyPollInterval) {
+        this.safetyPollInterval = safetyPollInterval;
+    }
+
+    /**
+     * How the events published in a transaction are delivered, see {@link DeliveryMode}.
+     * Default: TRANSACTIONAL.
+     */
+    private DeliveryMode deliveryMode = DeliveryMode.TRANSACTIONAL;
+
+    /**
+     * Whether this node runs the relay when {@code deliveryMode} is RELAY. Nodes which only serve requests can set it
+     * to false, so that the relays are scaled separately.
+     * Default: true.
+     */
+    private boolean relayWorker = true;
+
+    /**
+     * Maximum number of events read by one page of the relay.
+     * Default: 500.
+     */
+    private int relayPageSize = 500;
+
+    /**
+     * Delay between two polls of the relay, in milliseconds.
+     * Default: 200.
+     */
+    private long relayInterval = 200;
+
+    /**
+     * Name of the table holding the cursor of the relay.
+     * Default: ${persistentTableName}_relay.
+     */
+    private String relayCursorTableName;
+
+    public DeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public void setDeliveryMode(DeliveryMode deliveryMode) {
+        this.deliveryMode = deliveryMode;
+    }
+
+    public boolean isRelayWorker() {
+        return relayWorker;
+    }
+
+    public void setRelayWorker(boolean relayWorker) {
+        this.relayWorker = relayWorker;
+    }
+
+    public int getRelayPageSize() {
+        return relayPageSize;
+    }
+
+    public void setRelayPageSize(int relayPageSize) {
+        this.relayPageSize = relayPageSize;
+    }
+
+    public long getRelayInterval() {
+        return relayInterval;
+    }
+
+    public void setRelayInterval(long relayInterval) {
+        this.relayInterval = relayInterval;
+    }
+
+    public String getRelayCursorTableName() {
+        return relayCursorTableName;
+    }
+
+    public void setRelayCursorTableName(String relayCursorTableName) {
+        this.relayCursorTableName = relayCursorTableName;
+    }
+
+    /**
+     * Number of shards of the retrier, 0 or 1 disables sharding. Each shard (the events whose id modulo retryShards
+     * is the shard) is retried by one worker at a time, coordinated by leases in {@code leaseTableName}.
+     * Relational databases only.
+     * Default: 0.
+     */
+    private int retryShards = 0;
+
+    /**
+     * Number of retrier threads of this node when the retrier is sharded.
+     * Default: 1.
+     */
+    private int retryThreads = 1;
+
+    /**
+     * Name of the table holding the leases coordinating the nodes.
+     * Default: whistle_lease.
+     */
+    private String leaseTableName = "whistle_lease";
+
+    public int getRetryShards() {
+        return retryShards;
+    }
+
+    public void setRetryShards(int retryShards) {
+        this.retryShards = retryShards;
+    }
+
+    public int getRetryThreads() {
+        return retryThreads;
+    }
+
+    public void setRetryThreads(int retryThreads) {
+        this.retryThreads = retryThreads;
+    }
+
+    public String getLeaseTableName() {
+        return leaseTableName;
+    }
+
+    public void setLeaseTableName(String leaseTableName) {
+        this.leaseTableName = leaseTableName;
+    }
+
+    /**
+     * Elect a single retrier in the cluster through a lease in {@code leaseTableName} (a collection for MongoDB), so
+     * that the idle polling load does not grow with the number of nodes. Another node takes over once the lease of
+     * the leader expired.
+     * Default: false.
+     */
+    private boolean retryLeaderElection = false;
+
+    /**
+     * Duration of the lease of the retry leader, in seconds. It is renewed every third of its duration.
+     * Default: 30.
+     */
+    private int leaderLeaseDuration = 30;
+
+    public boolean isRetryLeaderElection() {
+        return retryLeaderElection;
+    }
+
+    public void setRetryLeaderElection(boolean retryLeaderElection) {
+        this.retryLeaderElection = retryLeaderElection;
+    }
+
+    public int getLeaderLeaseDuration() {
+        return leaderLeaseDuration;
+    }
+
+    public void setLeaderLeaseDuration(int leaderLeaseDuration) {
+        this.leaderLeaseDuration = leaderLeaseDuration;
+    }
+
+    /**
+     * Write concern of the confirmations of MongoDB, e.g. {@code W1} or {@code MAJORITY}, see
+     * {@code com.mongodb.WriteConcern#valueOf(String)}. Confirmations lost by a weaker write concern only cause
+     * re-deliveries.
+     * Default: null, the write concern of the MongoTemplate.
+     */
+    private String confirmWriteConcern;
+
+    public String getConfirmWriteConcern() {
+        return confirmWriteConcern;
+    }
+
+    public void setConfirmWriteConcern(String confirmWriteConcern) {
+        this.confirmWriteConcern = confirmWriteConcern;
+    }
+
+    /**
+     * MongoDB only. Expire confirmed events by a TTL index on {@code confirmedAt} after {@code confirmedEventRetention}
+     * seconds, instead of purging them periodically.
+     * Default: false.
+     */
+    private boolean confirmedTtlIndex = false;
+
+    public boolean isConfirmedTtlIndex() {
+        return confirmedTtlIndex;
+    }
+
+    public void setConfirmedTtlIndex(boolean confirmedTtlIndex) {
+        this.confirmedTtlIndex = confirmedTtlIndex;
+    }
+
+    /**
+     * Capacity of the queue of outgoing events, in events. If positive, the events are queued by
+     * {@link BoundedEventSender} instead of the unbounded queue of {@link ReactorEventSender}.
+     * Default: 0, unbounded.
+     */
+    private int senderQueueCapacity = 0;
+
+    /**
+     * Maximum estimated size of the queued outgoing events, in bytes, when {@code senderQueueCapacity} is positive.
+     * The size of an event is estimated without serializing it, see {@link EventSizeEstimator}.
+     * Default: 0, no limit.
+     */
+    private long senderQueueMaxBytes = 0;
+
+    /**
+     * What to do with the events which are not persisted when the queue of outgoing events is full, see
+     * {@link OverflowPolicy}. Persisted events are always dropped from memory and re-delivered by the retrier.
+     * Default: DROP.
+     */
+    private OverflowPolicy senderOverflowPolicy = OverflowPolicy.DROP;
+
+    public int getSenderQueueCapacity() {
+        return senderQueueCapacity;
+    }
+
+    public void setSenderQueueCapacity(int senderQueueCapacity) {
+        this.senderQueueCapacity = senderQueueCapacity;
+    }
+
+    public long getSenderQueueMaxBytes() {
+        return senderQueueMaxBytes;
+    }
+
+    public void setSenderQueueMaxBytes(long senderQueueMaxBytes) {
+        this.senderQueueMaxBytes = senderQueueMaxBytes;
+    }
+
+    public OverflowPolicy getSenderOverflowPolicy() {
+        return senderOverflowPolicy;
+    }
+
+    public void setSenderOverflowPolicy(OverflowPolicy senderOverflowPolicy) {
+        this.senderOverflowPolicy = senderOverflowPolicy;
+    }
+
+    /**
+     * Serialize the content of the events once, by the {@code EventContentSerializer}, and send the JSON as is: the
+     * persistenters store the same JSON, and the retried events are sent from the stored JSON without being
+     * deserialized. Otherwise the content is serialized again by the message converter of the binder.
+     * Default: false.
+     */
+    private boolean rawPayload = false;
+
+    public boolean isRawPayload() {
+        return rawPayload;
+    }
+
+    public void setRawPayload(boolean rawPayload) {
+        this.rawPayload = rawPayload;
+    }
+
+    /**
+     * Declare one output binding per publishing event type ({@code whistle-<type>-out-0}), created at startup, and
+     * send the events to the binding of their type with {@link StreamBridgeEventSender}, instead of routing them
+     * through the {@code spring.cloud.stream.sendto.destination} header. The events are still queued (see
+     * {@code senderQueueCapacity}) and sent by a thread of their own, the {@code cloudStreamSupplier} is not
+     * registered. Can not be used together with {@code senderLanes}.
+     * Default: false.
+     */
+    private boolean preBindDestinations = false;
+
+    public boolean isPreBindDestinations() {
+        return preBindDestinations;
+    }
+
+    public void setPreBindDestinations(boolean preBindDestinations) {
+        this.preBindDestinations = preBindDestinations;
+    }
+
+    /**
+     * Lanes of outgoing events, key: lane name, value: names of the event types of the lane. Each lane has its own
+     * queue, its own supplier binding ({@code whistleLane_<lane>-out-0}) and its own thread handing the events to the
+     * binder, see {@link LaneEventSender}, so that a slow or blocked destination does not delay the other lanes. The
+     * other event types go to the default lane, the {@code cloudStreamSupplier}. Can not be used together with
+     * {@code preBindDestinations}.
+     * Default: empty, all events share the {@code cloudStreamSupplier}.
+     */
+    private Map<String, List<String>> senderLanes = new LinkedHashMap<>();
+
+    /**
+     * Number of messages prefetched from its queue by the thread of a lane, when {@code senderLanes} are configured.
+     * Default: 256.
+     */
+    private int senderLaneBufferSize = 256;
+
+    public Map<String, List<String>> getSenderLanes() {
+        return senderLanes;
+    }
+
+    public void setSenderLanes(Map<String, List<String>> senderLanes) {
+        this.senderLanes = senderLanes;
+    }
+
+    public int getSenderLaneBufferSize() {
+        return senderLaneBufferSize;
+    }
+
+    public void setSenderLaneBufferSize(int senderLaneBufferSize) {
+        this.senderLaneBufferSize = senderLaneBufferSize;
+    }
 }
@@ -0,0 +1,76 @@
+package org.coderclan.whistle;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Auto-configuration exposing Whistle's internal state as Micrometer meters.
+ * Only loaded if Micrometer is on the classpath; the meters are bound by Spring Boot Actuator.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@Configuration
+@AutoConfigureAfter(name = "org.coderclan.whistle.WhistleConfiguration")
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+public class WhistleMetricsConfiguration {
+
+    @Bean
+    @ConditionalOnBean(ConfirmCoalescer.class)
+    public MeterBinder whistleConfirmCoalescerMetrics(@Autowired ConfirmCoalescer confirmCoalescer) {
+        return registry -> {
+            Gauge.builder("whistle.confirm.queue.depth", confirmCoalescer, ConfirmCoalescer::getQueueDepth)
+                    .description("Number of broker ACKs waiting to be confirmed")
+                    .register(registry);
+            FunctionTimer.builder("whistle.confirm.flush", confirmCoalescer,
+                            ConfirmCoalescer::getFlushCount, ConfirmCoalescer::getFlushTotalNanos, TimeUnit.NANOSECONDS)
+                    .description("Latency of the batched confirmation statements")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    @ConditionalOnBean(EventSender.class)
+    public MeterBinder whistleEventSenderMetrics(@Autowired EventSender eventSender) {
+        return registry -> {
+            if (eventSender instanceof LaneEventSender) {
+                ((LaneEventSender) eventSender).getLanes().forEach((lane, sender) -> bindQueueMetrics(registry, sender, Tags.of("lane", lane)));
+            } else if (eventSender instanceof StreamBridgeEventSender) {
+                bindQueueMetrics(registry, ((StreamBridgeEventSender) eventSender).getQueue(), Tags.empty());
+            } else {
+                bindQueueMetrics(registry, eventSender, Tags.empty());
+            }
+        };
+    }
+
+    private static void bindQueueMetrics(MeterRegistry registry, EventSender eventSender, Tags tags) {
+        if (!(eventSender instanceof BoundedEventSender)) {
+            return;
+        }
+        BoundedEventSender sender = (BoundedEventSender) eventSender;
+        Gauge.builder("whistle.send.queue.depth", sender, BoundedEventSender::getQueueDepth)
+                .description("Number of events waiting to be handed to the binder")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder("whistle.send.queue.bytes", sender, BoundedEventSender::getQueuedBytes)
+                .description("Estimated size of the events waiting to be handed to the binder")
+                .baseUnit("bytes")
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder("whistle.send.dropped", sender, BoundedEventSender::getDroppedCount)
+                .description("Number of events dropped or rejected because the send queue was full")
+                .tags(tags)
+                .register(registry);
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
@@ -21,13 +22,16 @@ import java.util.Arrays;
 @Configuration
 @AutoConfigureAfter(name = {"org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration", "org.springframework.boot.mongodb.autoconfigure.MongoAutoConfiguration"})
 @ConditionalOnClass(MongoCustomConversions.class)
+@EnableConfigurationProperties(WhistleConfigurationProperties.class)
 public class WhistleMongodbConfiguration {
 
     @Bean("eventPersistenter")
+    @ConditionalOnClass(name = "com.mongodb.client.MongoClient")
     @ConditionalOnBean(MongoClientSettings.class)
     @ConditionalOnMissingBean
-    MongodbEventPersistenter mongodbEventPersistenter(@Autowired org.springframework.data.mongodb.core.MongoTemplate mongoTemplate) {
-        return new MongodbEventPersistenter(mongoTemplate);
+    MongodbEventPersistenter mongodbEventPersistenter(@Autowired org.springframework.data.mongodb.core.MongoTemplate mongoTemplate,
+                                                      @Autowired WhistleConfigurationProperties properties) {
+        return new MongodbEventPersistenter(mongoTemplate, properties);
     }
 
     @Bean
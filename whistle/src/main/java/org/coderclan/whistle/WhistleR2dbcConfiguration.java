@@ -0,0 +1,76 @@
+package org.coderclan.whistle;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.coderclan.whistle.r2dbc.H2R2dbcEventPersistenter;
+import org.coderclan.whistle.r2dbc.MysqlR2dbcEventPersistenter;
+import org.coderclan.whistle.r2dbc.PostgresqlR2dbcEventPersistenter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Auto-configuration of the R2DBC persistence, for applications using an R2DBC {@link ConnectionFactory}.
+ * If there is neither a blocking {@link EventPersistenter} nor a {@link DataSource}, a {@link BlockingEventPersistenter}
+ * view of the reactive persistenter is used by the retrier, the purger and the ACK handlers.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@Configuration
+@AutoConfigureAfter(name = {"org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration", "org.springframework.boot.r2dbc.autoconfigure.R2dbcAutoConfiguration", "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration", "org.springframework.boot.jdbc.autoconfigure.DataSourceAutoConfiguration", "org.coderclan.whistle.WhistleReactiveMongodbConfiguration"})
+@ConditionalOnClass(name = {"io.r2dbc.spi.ConnectionFactory", "org.springframework.r2dbc.core.DatabaseClient"})
+@EnableConfigurationProperties(WhistleConfigurationProperties.class)
+public class WhistleR2dbcConfiguration {
+
+    @Bean("postgresqlR2dbcEventPersistenter")
+    @ConditionalOnClass(name = "io.r2dbc.postgresql.PostgresqlConnectionFactoryProvider")
+    @ConditionalOnBean(ConnectionFactory.class)
+    @ConditionalOnMissingBean
+    public ReactiveEventPersistenter postgresqlR2dbcEventPersistenter(
+            @Autowired ConnectionFactory connectionFactory,
+            @Autowired EventContentSerializer serializer,
+            @Autowired EventTypeRegistrar eventTypeRegistrar,
+            @Autowired WhistleConfigurationProperties properties
+    ) {
+        return new PostgresqlR2dbcEventPersistenter(connectionFactory, serializer, eventTypeRegistrar, properties);
+    }
+
+    @Bean("mysqlR2dbcEventPersistenter")
+    @ConditionalOnClass(name = "io.asyncer.r2dbc.mysql.MySqlConnectionFactoryProvider")
+    @ConditionalOnBean(ConnectionFactory.class)
+    @ConditionalOnMissingBean
+    public ReactiveEventPersistenter mysqlR2dbcEventPersistenter(
+            @Autowired ConnectionFactory connectionFactory,
+            @Autowired EventContentSerializer serializer,
+            @Autowired EventTypeRegistrar eventTypeRegistrar,
+            @Autowired WhistleConfigurationProperties properties
+    ) {
+        return new MysqlR2dbcEventPersistenter(connectionFactory, serializer, eventTypeRegistrar, properties);
+    }
+
+    @Bean("h2R2dbcEventPersistenter")
+    @ConditionalOnClass(name = "io.r2dbc.h2.H2ConnectionFactoryProvider")
+    @ConditionalOnBean(ConnectionFactory.class)
+    @ConditionalOnMissingBean
+    public ReactiveEventPersistenter h2R2dbcEventPersistenter(
+            @Autowired ConnectionFactory connectionFactory,
+            @Autowired EventContentSerializer serializer,
+            @Autowired EventTypeRegistrar eventTypeRegistrar,
+            @Autowired WhistleConfigurationProperties properties
+    ) {
+        return new H2R2dbcEventPersistenter(connectionFactory, serializer, eventTypeRegistrar, properties);
+    }
+
+    @Bean("eventPersistenter")
+    @ConditionalOnBean({ConnectionFactory.class, ReactiveEventPersistenter.class})
+    @ConditionalOnMissingBean({EventPersistenter.class, DataSource.class})
+    public EventPersistenter blockingR2dbcEventPersistenter(@Autowired ReactiveEventPersistenter reactiveEventPersistenter) {
+        return new BlockingEventPersistenter(reactiveEventPersistenter);
+    }
+}
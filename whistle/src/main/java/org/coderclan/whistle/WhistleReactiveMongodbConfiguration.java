@@ -0,0 +1,41 @@
+package org.coderclan.whistle;
+
+import org.coderclan.whistle.mongodb.ReactiveMongodbEventPersistenter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+/**
+ * Auto-configuration of the reactive MongoDB persistence, for applications using {@link ReactiveMongoTemplate}.
+ * If there is no blocking {@link EventPersistenter}, a {@link BlockingEventPersistenter} view of the reactive
+ * persistenter is used by the retrier, the purger and the ACK handlers.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@Configuration
+@AutoConfigureAfter(name = {"org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration", "org.springframework.boot.data.mongodb.autoconfigure.DataMongoReactiveAutoConfiguration", "org.coderclan.whistle.WhistleMongodbConfiguration"})
+@ConditionalOnClass(name = {"org.springframework.data.mongodb.core.ReactiveMongoTemplate", "com.mongodb.reactivestreams.client.MongoClient"})
+@EnableConfigurationProperties(WhistleConfigurationProperties.class)
+public class WhistleReactiveMongodbConfiguration {
+
+    @Bean
+    @ConditionalOnBean(ReactiveMongoTemplate.class)
+    @ConditionalOnMissingBean
+    public ReactiveEventPersistenter reactiveMongodbEventPersistenter(@Autowired ReactiveMongoTemplate reactiveMongoTemplate,
+                                                                      @Autowired WhistleConfigurationProperties properties) {
+        return new ReactiveMongodbEventPersistenter(reactiveMongoTemplate, properties);
+    }
+
+    @Bean("eventPersistenter")
+    @ConditionalOnBean(ReactiveMongoTemplate.class)
+    @ConditionalOnMissingBean
+    public EventPersistenter blockingMongodbEventPersistenter(@Autowired ReactiveEventPersistenter reactiveEventPersistenter) {
+        return new BlockingEventPersistenter(reactiveEventPersistenter);
+    }
+}
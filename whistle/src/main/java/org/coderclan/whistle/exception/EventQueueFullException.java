@@ -0,0 +1,20 @@
+package org.coderclan.whistle.exception;
+
+/**
+ * Thrown when an event which is not persisted can not be queued for sending, because the queue of the sender is full.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+public class EventQueueFullException extends RuntimeException {
+
+    public EventQueueFullException() {
+    }
+
+    public EventQueueFullException(String message) {
+        super(message);
+    }
+
+    public EventQueueFullException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,20 @@
+package org.coderclan.whistle.exception;
+
+/**
+ * Thrown when unconfirmed events cannot be retrieved because of lock contention or a query timeout.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+public class EventRetrievalException extends RuntimeException {
+
+    public EventRetrievalException() {
+    }
+
+    public EventRetrievalException(String message) {
+        super(message);
+    }
+
+    public EventRetrievalException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -4,17 +4,27 @@ import org.coderclan.whistle.api.EventContent;
 import org.coderclan.whistle.api.EventType;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.Date;
+
 /**
  * @author aray(dot)chou(dot)cn(at)gmail(dot)com
  */
 @Document("sys_event_out")
-@CompoundIndex(
-        name = "unconfirmed_retry_order",
-        def = "{'retry': 1, '_id': -1}",
-        partialFilter = "{'confirmed': false}"
-)
+@CompoundIndexes({
+        @CompoundIndex(
+                name = "unconfirmed_retry_order",
+                def = "{'retry': 1, '_id': -1}",
+                partialFilter = "{'confirmed': false}"
+        ),
+        @CompoundIndex(
+                name = "unconfirmed_due",
+                def = "{'nextAttemptAt': 1}",
+                partialFilter = "{'confirmed': false}"
+        )
+})
 public class MongoEvent<C extends EventContent> {
     @Id
     private String id;
@@ -22,6 +32,18 @@ public class MongoEvent<C extends EventContent> {
     private C content;
     private Boolean confirmed = false;
     private Integer retry = 0;
+    /**
+     * The event is not re-delivered before this time.
+     */
+    private Date nextAttemptAt;
+    /**
+     * Token of the last claim of the event by a retrier.
+     */
+    private String claimToken;
+    /**
+     * Time of the confirmation of the event, the TTL index expires confirmed events from it.
+     */
+    private Date confirmedAt;
 
     public MongoEvent() {
     }
@@ -58,4 +80,28 @@ public class MongoEvent<C extends EventContent> {
     public void setRetry(Integer retry) {
         this.retry = retry;
     }
+
+    public Date getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Date nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getClaimToken() {
+        return claimToken;
+    }
+
+    public void setClaimToken(String claimToken) {
+        this.claimToken = claimToken;
+    }
+
+    public Date getConfirmedAt() {
+        return confirmedAt;
+    }
+
+    public void setConfirmedAt(Date confirmedAt) {
+        this.confirmedAt = confirmedAt;
+    }
 }
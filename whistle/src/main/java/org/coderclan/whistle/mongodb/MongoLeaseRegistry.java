@@ -0,0 +1,70 @@
+package org.coderclan.whistle.mongodb;
+
+import net.jcip.annotations.ThreadSafe;
+import org.bson.Document;
+import org.coderclan.whistle.LeaseRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * {@link LeaseRegistry} backed by a collection with one document per lease, {@code _id} being the name of the lease.
+ * A lease is acquired by an upsert matching only a free, expired or own lease: if the lease is held by another holder,
+ * the upsert fails with a duplicate key.
+ * Lease expiry is based on the clocks of the nodes, which should be synchronized.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class MongoLeaseRegistry implements LeaseRegistry {
+    private static final Logger log = LoggerFactory.getLogger(MongoLeaseRegistry.class);
+    private static final String CLAIMED_BY = "claimedBy";
+    private static final String LEASE_UNTIL = "leaseUntil";
+
+    private final MongoTemplate template;
+    private final String collectionName;
+
+    public MongoLeaseRegistry(MongoTemplate template, String collectionName) {
+        this.template = template;
+        this.collectionName = collectionName;
+    }
+
+    @Override
+    public boolean tryAcquire(String name, String holder, int duration) {
+        Date now = new Date();
+        Query query = Query.query(Criteria.where("_id").is(name).orOperator(
+                Criteria.where(CLAIMED_BY).is(holder),
+                Criteria.where(CLAIMED_BY).is(null),
+                Criteria.where(LEASE_UNTIL).lt(now)));
+        Update update = new Update().set(CLAIMED_BY, holder).set(LEASE_UNTIL, new Date(now.getTime() + duration * 1000L));
+        try {
+            Document lease = template.findAndModify(query, update, FindAndModifyOptions.options().upsert(true).returnNew(true), Document.class, collectionName);
+            return Objects.nonNull(lease) && holder.equals(lease.getString(CLAIMED_BY));
+        } catch (DuplicateKeyException e) {
+            // the lease exists and is held by another holder.
+            log.trace("Lease '{}' is held by another holder.", name);
+            return false;
+        } catch (RuntimeException e) {
+            log.warn("Failed to acquire lease '{}': {}", name, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void release(String name, String holder) {
+        try {
+            template.updateFirst(Query.query(Criteria.where("_id").is(name).and(CLAIMED_BY).is(holder)),
+                    new Update().set(CLAIMED_BY, null), collectionName);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release lease '{}': {}", name, e.getMessage());
+        }
+    }
+}
@@ -1,18 +1,50 @@
 package org.coderclan.whistle.mongodb;
 
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.coderclan.whistle.Constants;
 import org.coderclan.whistle.Event;
 import org.coderclan.whistle.EventPersistenter;
+import org.coderclan.whistle.LeaseRegistry;
+import org.coderclan.whistle.RetryBackoff;
+import org.coderclan.whistle.WhistleConfigurationProperties;
 import org.coderclan.whistle.api.EventContent;
 import org.coderclan.whistle.api.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -21,52 +53,334 @@ import java.util.stream.Collectors;
 
 public class MongodbEventPersistenter implements EventPersistenter {
 
+    private static final Logger log = LoggerFactory.getLogger(MongodbEventPersistenter.class);
+    private static final String CONFIRMED = "confirmed";
+    private static final String RETRY = "retry";
+    private static final String NEXT_ATTEMPT_AT = "nextAttemptAt";
+    private static final String CLAIM_TOKEN = "claimToken";
+    private static final String CONFIRMED_AT = "confirmedAt";
+    private static final String CONFIRMED_TTL_INDEX = "confirmed_ttl";
+
     private final MongoTemplate template;
+    private final boolean deleteOnConfirm;
+    private final int maxRetryCount;
+    private final String collectionName;
+    private final String deadLetterCollectionName;
+    private final LeaseRegistry leaseRegistry;
+    private final int leaseDuration;
+    private final String nodeId;
+    private final RetryBackoff backoff;
+    private final WriteConcern confirmWriteConcern;
+    private final boolean confirmedTtl;
+    /**
+     * Whether the server runs multi-document transactions, null until the first event is parked.
+     */
+    private volatile Boolean transactional;
 
     public MongodbEventPersistenter(@Autowired MongoTemplate template) {
+        this(template, new WhistleConfigurationProperties());
+    }
+
+    public MongodbEventPersistenter(MongoTemplate template, WhistleConfigurationProperties properties) {
         this.template = template;
+        this.deleteOnConfirm = properties.isDeleteOnConfirm();
+        this.maxRetryCount = Math.max(0, properties.getMaxRetryCount());
+        this.collectionName = template.getCollectionName(MongoEvent.class);
+        this.deadLetterCollectionName = Objects.isNull(properties.getDeadLetterTableName()) ? collectionName + "_dead" : properties.getDeadLetterTableName();
+        this.leaseRegistry = new MongoLeaseRegistry(template, properties.getLeaseTableName());
+        this.leaseDuration = Math.max(1, properties.getLeaseDuration());
+        this.nodeId = properties.getNodeId();
+        this.backoff = new RetryBackoff(properties);
+        this.confirmWriteConcern = parseWriteConcern(properties.getConfirmWriteConcern());
+        this.confirmedTtl = properties.isConfirmedTtlIndex() && properties.getConfirmedEventRetention() > 0;
+        if (confirmedTtl) {
+            createConfirmedTtlIndex(properties.getConfirmedEventRetention());
+        }
     }
 
     @Override
     public <C extends EventContent> String persistEvent(EventType<C> type, C content) {
-        MongoEvent<C> ret = template.insert(new MongoEvent<C>(type, content));
+        MongoEvent<C> ret = template.insert(newMongoEvent(type, content));
         return ret.getId();
     }
 
+    /**
+     * Insert all events with one {@code insertAll} round trip.
+     */
+    @Override
+    public List<String> persistEvents(List<Event<?>> events) {
+        List<MongoEvent<?>> documents = new ArrayList<>(events.size());
+        for (Event<?> event : events) {
+            documents.add(newMongoEvent(event));
+        }
+        return template.insertAll(documents).stream()
+                .map(MongoEvent::getId)
+                .collect(Collectors.toList());
+    }
+
+    private <C extends EventContent> MongoEvent<C> newMongoEvent(Event<C> event) {
+        return newMongoEvent(event.getType(), event.getContent());
+    }
+
+    private <C extends EventContent> MongoEvent<C> newMongoEvent(EventType<C> type, C content) {
+        MongoEvent<C> event = new MongoEvent<>(type, content);
+        // leased until the first delivery is confirmed, so that the retrier does not re-send in-flight events.
+        event.setNextAttemptAt(new Date(System.currentTimeMillis() + leaseDuration * 1000L));
+        return event;
+    }
+
     @Override
     public void confirmEvent(String persistentEventId) {
-        template.update(MongoEvent.class)
-                .matching(Query.query(Criteria.where("id").is(persistentEventId)))
-                .apply(Update.update("confirmed", true)).first();
+        confirmEvents(Collections.singletonList(persistentEventId));
+    }
+
+    /**
+     * Confirm all events with one unordered bulk write, with the {@code confirmWriteConcern} write concern.
+     */
+    @Override
+    public void confirmEvents(Collection<String> persistentEventIds) {
+        if (persistentEventIds.isEmpty()) {
+            return;
+        }
+        List<WriteModel<Document>> writes = new ArrayList<>(persistentEventIds.size());
+        Bson confirmation = Updates.combine(Updates.set(CONFIRMED, true), Updates.set(CONFIRMED_AT, new Date()));
+        for (String persistentEventId : persistentEventIds) {
+            Bson filter = Filters.eq("_id", ObjectId.isValid(persistentEventId) ? new ObjectId(persistentEventId) : persistentEventId);
+            writes.add(deleteOnConfirm ? new DeleteOneModel<Document>(filter) : new UpdateOneModel<Document>(filter, confirmation));
+        }
+        try {
+            MongoCollection<Document> collection = template.getCollection(collectionName);
+            if (Objects.nonNull(confirmWriteConcern)) {
+                collection = collection.withWriteConcern(confirmWriteConcern);
+            }
+            collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+            log.debug("Confirm events: persistentEventIds={}", persistentEventIds);
+        } catch (MongoException e) {
+            log.error("Failed to confirm events, count={}", persistentEventIds.size(), e);
+        }
+    }
+
+    /**
+     * Create the TTL index expiring the documents {@code retention} seconds after their {@code confirmedAt}.
+     * Unconfirmed documents have no {@code confirmedAt} and never expire.
+     */
+    private void createConfirmedTtlIndex(int retention) {
+        try {
+            template.getCollection(collectionName).createIndex(Indexes.ascending(CONFIRMED_AT),
+                    new IndexOptions().name(CONFIRMED_TTL_INDEX).expireAfter((long) retention, TimeUnit.SECONDS));
+            log.info("Confirmed events of collection '{}' expire {}s after their confirmation.", collectionName, retention);
+        } catch (MongoException e) {
+            log.error("Failed to create TTL index '{}' on collection '{}'. If the retention changed, please drop the index first.",
+                    CONFIRMED_TTL_INDEX, collectionName, e);
+        }
+    }
+
+    private static WriteConcern parseWriteConcern(String name) {
+        if (Objects.isNull(name) || name.isEmpty()) {
+            return null;
+        }
+        WriteConcern writeConcern = WriteConcern.valueOf(name);
+        if (Objects.isNull(writeConcern)) {
+            throw new IllegalArgumentException("Unknown write concern: " + name);
+        }
+        return writeConcern;
+    }
+
+    /**
+     * Return the lease registry backed by the {@code leaseTableName} collection.
+     */
+    @Override
+    public LeaseRegistry getLeaseRegistry() {
+        return leaseRegistry;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public List<Event<?>> retrieveUnconfirmedEvent() {
-        Query query = Query.query(Criteria.where("confirmed").is(false))
-                // Order by retry asc, id desc
-                // Retry ASC: events with lower retry counts are processed first (poison events sink down).
-                // ID DESC: among events with the same retry count, newer events are processed first.
-                .with(Sort.by(Sort.Direction.ASC, "retry").and(Sort.by(Sort.Direction.DESC, "id")))
-                .limit(Constants.RETRY_BATCH_COUNT);
-        List<MongoEvent<EventContent>> r = (List<MongoEvent<EventContent>>) (List<?>) template.find(query, MongoEvent.class);
-
-        // If there are results, increment their retry counter by 1 in the database.
-        if (!r.isEmpty()) {
-            List<String> ids = r.stream()
-                    .map(MongoEvent::getId)
-                    // sort by id to avoid deadlock in mongodb
-                    .sorted()
-                    .collect(Collectors.toList());
-            Query incQuery = Query.query(Criteria.where("id").in(ids));
-            Update incUpdate = new Update().inc("retry", 1);
-            template.update(MongoEvent.class)
-                    .matching(incQuery)
-                    .apply(incUpdate).all();
-        }
-
-        return r.stream()
-                .map(e -> new Event<>(e.getId(), e.getType(), e.getContent()))
+        return retrieveUnconfirmedEvent(Constants.RETRY_BATCH_COUNT);
+    }
+
+    /**
+     * Claim at most {@code count} unconfirmed events which are due, see {@link #claim(int)}. Documents are read raw
+     * and converted one by one, so that a document which can not be converted (e.g. its event type is no longer
+     * registered) does not fail the whole batch.
+     * If {@code maxRetryCount} is positive, documents which still can not be converted after {@code maxRetryCount}
+     * retries are moved to the dead-letter collection with the last error. Events which can be converted stay.
+     */
+    @Override
+    public List<Event<?>> retrieveUnconfirmedEvent(int count) {
+        List<Document> documents = claim(count);
+
+        List<Event<?>> events = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            MongoEvent<?> e = null;
+            String error = null;
+            try {
+                e = template.getConverter().read(MongoEvent.class, document);
+            } catch (RuntimeException ex) {
+                error = "Failed to convert event: " + ex;
+            }
+            // retry count before the claim
+            int retry = document.getInteger(RETRY, 1) - 1;
+            if (Objects.nonNull(e)) {
+                events.add(toEvent(e));
+            } else if (maxRetryCount > 0 && retry >= maxRetryCount) {
+                park(document, error);
+            } else {
+                log.error("{}, id={}", error, document.get("_id"));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Take ownership of a batch of due documents, so that concurrent retriers (of this or other nodes) never claim the
+     * same document:
+     * <ol>
+     * <li>read the ids of at most {@code count} due documents, ordered by retry asc (poison events sink down) then
+     * _id desc (newer events first);</li>
+     * <li>claim them with one update matching only the documents which are still due: the claim token is set, the retry
+     * counter incremented and the next attempt postponed by {@code leaseDuration} seconds;</li>
+     * <li>read back the documents holding the claim token, and postpone their next attempt by the backoff of
+     * {@link RetryBackoff} with one unordered bulk write.</li>
+     * </ol>
+     *
+     * @return the claimed documents, with their retry counter after the claim
+     */
+    private List<Document> claim(int count) {
+        Date now = new Date();
+        Query candidates = Query.query(Criteria.where(CONFIRMED).is(false).and(NEXT_ATTEMPT_AT).not().gte(now))
+                .with(Sort.by(Sort.Direction.ASC, RETRY).and(Sort.by(Sort.Direction.DESC, "_id")))
+                .limit(count);
+        candidates.fields().include("_id");
+        List<Object> ids = template.find(candidates, Document.class, collectionName).stream()
+                .map(d -> d.get("_id"))
                 .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String token = nodeId + ":" + UUID.randomUUID();
+        Query claimQuery = Query.query(Criteria.where("_id").in(ids).and(CONFIRMED).is(false).and(NEXT_ATTEMPT_AT).not().gte(now));
+        Update claimUpdate = new Update()
+                .set(CLAIM_TOKEN, token)
+                .set(NEXT_ATTEMPT_AT, new Date(now.getTime() + leaseDuration * 1000L))
+                .inc(RETRY, 1);
+        if (template.updateMulti(claimQuery, claimUpdate, collectionName).getModifiedCount() == 0) {
+            return Collections.emptyList();
+        }
+
+        List<Document> documents = template.find(Query.query(Criteria.where("_id").in(ids).and(CLAIM_TOKEN).is(token)), Document.class, collectionName);
+        if (!documents.isEmpty()) {
+            BulkOperations backoffs = template.bulkOps(BulkOperations.BulkMode.UNORDERED, collectionName);
+            for (Document document : documents) {
+                double delay = Math.max(leaseDuration, backoff.getDelaySeconds(document.getInteger(RETRY, 1) - 1, ThreadLocalRandom.current().nextDouble()));
+                backoffs.updateOne(Query.query(Criteria.where("_id").is(document.get("_id")).and(CLAIM_TOKEN).is(token)),
+                        Update.update(NEXT_ATTEMPT_AT, new Date(now.getTime() + (long) (delay * 1000))));
+            }
+            backoffs.execute();
+        }
+        // sort as the candidates were sorted
+        documents.sort(Comparator.comparing((Document d) -> d.getInteger(RETRY, 1))
+                .thenComparing(d -> d.get("_id").toString(), Comparator.reverseOrder()));
+        return documents;
+    }
+
+    private static <C extends EventContent> Event<C> toEvent(MongoEvent<C> e) {
+        return new Event<>(e.getId(), e.getType(), e.getContent());
+    }
+
+    /**
+     * Move the document to the dead-letter collection. Both writes run in one transaction if the server supports
+     * multi-document transactions (a replica set or a sharded cluster), see {@link #supportsTransactions(Document)}.
+     * <p>
+     * On a standalone server the document is copied first (an upsert by _id) and removed afterwards. A crash between
+     * the two writes leaves the event in both collections: it is claimed again after its backoff and, if it still can
+     * not be converted, parked again over the same copy. If it can be converted by then, it is delivered and the stale
+     * copy stays in the dead-letter collection.
+     */
+    private void park(Document document, String error) {
+        log.warn("Event moved to dead-letter collection '{}', id={}: {}", deadLetterCollectionName, document.get("_id"), error);
+        document.append("lastError", error).append("deadTime", new Date());
+        Query live = Query.query(Criteria.where("_id").is(document.get("_id")));
+        if (!isTransactional()) {
+            template.save(document, deadLetterCollectionName);
+            template.remove(live, collectionName);
+            return;
+        }
+        // closing the session aborts the transaction if it was not committed.
+        try (ClientSession session = template.getMongoDatabaseFactory().getSession(ClientSessionOptions.builder().build())) {
+            session.startTransaction();
+            MongoTemplate inSession = template.withSession(session);
+            inSession.save(document, deadLetterCollectionName);
+            inSession.remove(live, collectionName);
+            session.commitTransaction();
+        }
+    }
+
+    private boolean isTransactional() {
+        Boolean t = transactional;
+        if (Objects.isNull(t)) {
+            t = supportsTransactions(template.executeCommand(new Document("isMaster", 1)));
+            if (t) {
+                createDeadLetterCollection();
+            } else {
+                log.warn("MongoDB does not support transactions, events are moved to dead-letter collection '{}' without one.", deadLetterCollectionName);
+            }
+            transactional = t;
+        }
+        return t;
+    }
+
+    /**
+     * MongoDB before 4.4 can not create a collection inside a transaction.
+     */
+    private void createDeadLetterCollection() {
+        if (template.collectionExists(deadLetterCollectionName)) {
+            return;
+        }
+        try {
+            template.createCollection(deadLetterCollectionName);
+        } catch (DataAccessException e) {
+            // created by another node in the meantime.
+            log.debug("Dead-letter collection '{}' not created: {}", deadLetterCollectionName, e.getMessage());
+        }
+    }
+
+    /**
+     * Multi-document transactions need a replica set of MongoDB 4.0+ or a sharded cluster of MongoDB 4.2+.
+     *
+     * @param hello reply of the {@code isMaster} command
+     * @return whether the server supports multi-document transactions
+     */
+    static boolean supportsTransactions(Document hello) {
+        int wireVersion = hello.getInteger("maxWireVersion", 0);
+        if ("isdbgrid".equals(hello.getString("msg"))) {
+            return wireVersion >= 8;
+        }
+        return hello.containsKey("setName") && wireVersion >= 7;
+    }
+
+    /**
+     * Delete confirmed events created more than {@code retention} seconds ago, oldest first.
+     * The creation time is taken from the ObjectId, so no extra field or index is needed.
+     * Nothing is deleted if the confirmed events are expired by the TTL index.
+     */
+    @Override
+    public int purgeConfirmedEvents(int retention, int limit) {
+        if (confirmedTtl) {
+            return 0;
+        }
+        ObjectId before = new ObjectId(new Date(System.currentTimeMillis() - retention * 1000L));
+        Query query = Query.query(Criteria.where("confirmed").is(true).and("id").lt(before))
+                .with(Sort.by(Sort.Direction.ASC, "id"))
+                .limit(limit);
+        query.fields().include("id");
+        List<String> ids = template.find(query, MongoEvent.class).stream()
+                .map(MongoEvent::getId)
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return (int) template.remove(Query.query(Criteria.where("id").in(ids)), MongoEvent.class).getDeletedCount();
     }
-}
\ No newline at end of file
+}
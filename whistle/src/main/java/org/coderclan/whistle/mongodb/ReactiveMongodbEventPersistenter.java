@@ -0,0 +1,248 @@
+package org.coderclan.whistle.mongodb;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import net.jcip.annotations.ThreadSafe;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.coderclan.whistle.Event;
+import org.coderclan.whistle.ReactiveEventPersistenter;
+import org.coderclan.whistle.RetryBackoff;
+import org.coderclan.whistle.WhistleConfigurationProperties;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ReactiveEventPersistenter} backed by a {@link ReactiveMongoTemplate}, storing the events in the same
+ * collection and layout as {@link MongodbEventPersistenter}. Events are persisted in the reactive transaction of the
+ * subscriber context, and retry batches are claimed the same way as {@link MongodbEventPersistenter} does.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class ReactiveMongodbEventPersistenter implements ReactiveEventPersistenter {
+    private static final Logger log = LoggerFactory.getLogger(ReactiveMongodbEventPersistenter.class);
+    private static final String CONFIRMED = "confirmed";
+    private static final String RETRY = "retry";
+    private static final String NEXT_ATTEMPT_AT = "nextAttemptAt";
+    private static final String CLAIM_TOKEN = "claimToken";
+    private static final String CONFIRMED_AT = "confirmedAt";
+    private static final String CONFIRMED_TTL_INDEX = "confirmed_ttl";
+
+    private final ReactiveMongoTemplate template;
+    private final String collectionName;
+    private final String deadLetterCollectionName;
+    /**
+     * Whether the server runs multi-document transactions, null until the first event is parked.
+     */
+    private volatile Boolean transactional;
+    private final boolean deleteOnConfirm;
+    private final int maxRetryCount;
+    private final int leaseDuration;
+    private final String nodeId;
+    private final RetryBackoff backoff;
+
+    public ReactiveMongodbEventPersistenter(ReactiveMongoTemplate template, WhistleConfigurationProperties properties) {
+        this.template = template;
+        this.collectionName = template.getCollectionName(MongoEvent.class);
+        this.deadLetterCollectionName = Objects.isNull(properties.getDeadLetterTableName()) ? collectionName + "_dead" : properties.getDeadLetterTableName();
+        this.deleteOnConfirm = properties.isDeleteOnConfirm();
+        this.maxRetryCount = Math.max(0, properties.getMaxRetryCount());
+        this.leaseDuration = Math.max(1, properties.getLeaseDuration());
+        this.nodeId = properties.getNodeId();
+        this.backoff = new RetryBackoff(properties);
+        if (properties.isConfirmedTtlIndex() && properties.getConfirmedEventRetention() > 0) {
+            createConfirmedTtlIndex(properties.getConfirmedEventRetention());
+        }
+    }
+
+    private void createConfirmedTtlIndex(int retention) {
+        template.getCollection(collectionName)
+                .flatMap(c -> Mono.from(c.createIndex(Indexes.ascending(CONFIRMED_AT),
+                        new IndexOptions().name(CONFIRMED_TTL_INDEX).expireAfter((long) retention, TimeUnit.SECONDS))))
+                .subscribe(
+                        name -> log.info("Confirmed events of collection '{}' expire {}s after their confirmation.", collectionName, retention),
+                        e -> log.error("Failed to create TTL index '{}' on collection '{}'. If the retention changed, please drop the index first.",
+                                CONFIRMED_TTL_INDEX, collectionName, e));
+    }
+
+    @Override
+    public <C extends EventContent> Mono<String> persistEvent(EventType<C> type, C content) {
+        MongoEvent<C> event = new MongoEvent<>(type, content);
+        // leased until the first delivery is confirmed, so that the retrier does not re-send in-flight events.
+        event.setNextAttemptAt(new Date(System.currentTimeMillis() + leaseDuration * 1000L));
+        return template.insert(event).map(MongoEvent::getId);
+    }
+
+    /**
+     * Confirm all events with one unordered bulk write. Failures are logged, the events are re-delivered later.
+     */
+    @Override
+    public Mono<Void> confirmEvents(Collection<String> persistentEventIds) {
+        if (persistentEventIds.isEmpty()) {
+            return Mono.empty();
+        }
+        List<WriteModel<Document>> writes = new ArrayList<>(persistentEventIds.size());
+        Bson confirmation = Updates.combine(Updates.set(CONFIRMED, true), Updates.set(CONFIRMED_AT, new Date()));
+        for (String persistentEventId : persistentEventIds) {
+            Bson filter = Filters.eq("_id", ObjectId.isValid(persistentEventId) ? new ObjectId(persistentEventId) : persistentEventId);
+            writes.add(deleteOnConfirm ? new DeleteOneModel<Document>(filter) : new UpdateOneModel<Document>(filter, confirmation));
+        }
+        return template.getCollection(collectionName)
+                .flatMap(c -> Mono.from(c.bulkWrite(writes, new BulkWriteOptions().ordered(false))))
+                .doOnNext(r -> log.debug("Confirm events: persistentEventIds={}", persistentEventIds))
+                .doOnError(e -> log.error("Failed to confirm events, count={}", persistentEventIds.size(), e))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Claim at most {@code count} unconfirmed events which are due, see {@link MongodbEventPersistenter}.
+     */
+    @Override
+    public Mono<List<Event<?>>> retrieveUnconfirmedEvent(int count) {
+        return claim(count).flatMap(this::toEvents);
+    }
+
+    private Mono<List<Document>> claim(int count) {
+        Date now = new Date();
+        Query candidates = Query.query(Criteria.where(CONFIRMED).is(false).and(NEXT_ATTEMPT_AT).not().gte(now))
+                .with(Sort.by(Sort.Direction.ASC, RETRY).and(Sort.by(Sort.Direction.DESC, "_id")))
+                .limit(count);
+        candidates.fields().include("_id");
+        return template.find(candidates, Document.class, collectionName)
+                .map(d -> d.get("_id"))
+                .collectList()
+                .flatMap(ids -> ids.isEmpty() ? Mono.just(Collections.<Document>emptyList()) : claim(ids, now));
+    }
+
+    private Mono<List<Document>> claim(List<Object> ids, Date now) {
+        String token = nodeId + ":" + UUID.randomUUID();
+        Query claimQuery = Query.query(Criteria.where("_id").in(ids).and(CONFIRMED).is(false).and(NEXT_ATTEMPT_AT).not().gte(now));
+        Update claimUpdate = new Update()
+                .set(CLAIM_TOKEN, token)
+                .set(NEXT_ATTEMPT_AT, new Date(now.getTime() + leaseDuration * 1000L))
+                .inc(RETRY, 1);
+        return template.updateMulti(claimQuery, claimUpdate, collectionName)
+                .flatMap(result -> result.getModifiedCount() == 0
+                        ? Mono.just(Collections.<Document>emptyList())
+                        : template.find(Query.query(Criteria.where("_id").in(ids).and(CLAIM_TOKEN).is(token)), Document.class, collectionName)
+                        .collectList()
+                        .flatMap(documents -> postpone(documents, token, now).thenReturn(documents)))
+                .map(documents -> {
+                    List<Document> sorted = new ArrayList<>(documents);
+                    sorted.sort(Comparator.comparing((Document d) -> d.getInteger(RETRY, 1))
+                            .thenComparing(d -> d.get("_id").toString(), Comparator.reverseOrder()));
+                    return sorted;
+                });
+    }
+
+    /**
+     * Postpone the next attempt of the claimed documents by their backoff, with one unordered bulk write.
+     */
+    private Mono<Void> postpone(List<Document> documents, String token, Date now) {
+        if (documents.isEmpty()) {
+            return Mono.empty();
+        }
+        List<WriteModel<Document>> writes = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            double delay = Math.max(leaseDuration, backoff.getDelaySeconds(document.getInteger(RETRY, 1) - 1, ThreadLocalRandom.current().nextDouble()));
+            writes.add(new UpdateOneModel<Document>(Filters.and(Filters.eq("_id", document.get("_id")), Filters.eq(CLAIM_TOKEN, token)),
+                    Updates.set(NEXT_ATTEMPT_AT, new Date(now.getTime() + (long) (delay * 1000)))));
+        }
+        return template.getCollection(collectionName)
+                .flatMap(c -> Mono.from(c.bulkWrite(writes, new BulkWriteOptions().ordered(false))))
+                .then();
+    }
+
+    private Mono<List<Event<?>>> toEvents(List<Document> documents) {
+        List<Event<?>> events = new ArrayList<>(documents.size());
+        List<Mono<Void>> parks = new ArrayList<>();
+        for (Document document : documents) {
+            MongoEvent<?> e = null;
+            String error = null;
+            try {
+                e = template.getConverter().read(MongoEvent.class, document);
+            } catch (RuntimeException ex) {
+                error = "Failed to convert event: " + ex;
+            }
+            // retry count before the claim
+            int retry = document.getInteger(RETRY, 1) - 1;
+            if (Objects.nonNull(e)) {
+                events.add(toEvent(e));
+            } else if (maxRetryCount > 0 && retry >= maxRetryCount) {
+                parks.add(park(document, error));
+            } else {
+                log.error("{}, id={}", error, document.get("_id"));
+            }
+        }
+        return Flux.concat(parks).then(Mono.just(events));
+    }
+
+    private static <C extends EventContent> Event<C> toEvent(MongoEvent<C> e) {
+        return new Event<>(e.getId(), e.getType(), e.getContent());
+    }
+
+    /**
+     * Move the document to the dead-letter collection, in one transaction if the server supports it, see
+     * {@link MongodbEventPersistenter}.
+     */
+    private Mono<Void> park(Document document, String error) {
+        log.warn("Event moved to dead-letter collection '{}', id={}: {}", deadLetterCollectionName, document.get("_id"), error);
+        document.append("lastError", error).append("deadTime", new Date());
+        Query live = Query.query(Criteria.where("_id").is(document.get("_id")));
+        return isTransactional().flatMap(t -> t
+                ? template.inTransaction().execute(ops -> ops.save(document, deadLetterCollectionName)
+                        .then(ops.remove(live, collectionName))).then()
+                : template.save(document, deadLetterCollectionName).then(template.remove(live, collectionName)).then());
+    }
+
+    private Mono<Boolean> isTransactional() {
+        Boolean t = transactional;
+        if (Objects.nonNull(t)) {
+            return Mono.just(t);
+        }
+        return template.executeCommand(new Document("isMaster", 1))
+                .map(MongodbEventPersistenter::supportsTransactions)
+                .flatMap(supported -> {
+                    if (!supported) {
+                        log.warn("MongoDB does not support transactions, events are moved to dead-letter collection '{}' without one.", deadLetterCollectionName);
+                        return Mono.just(false);
+                    }
+                    // MongoDB before 4.4 can not create a collection inside a transaction.
+                    return template.collectionExists(deadLetterCollectionName)
+                            .flatMap(exists -> exists ? Mono.empty() : template.createCollection(deadLetterCollectionName).then())
+                            .onErrorResume(DataAccessException.class, e -> Mono.empty())
+                            .thenReturn(true);
+                })
+                .doOnNext(supported -> transactional = supported);
+    }
+}
@@ -0,0 +1,462 @@
+package org.coderclan.whistle.r2dbc;
+
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.R2dbcTransientException;
+import org.coderclan.whistle.Constants;
+import org.coderclan.whistle.Event;
+import org.coderclan.whistle.EventContentSerializer;
+import org.coderclan.whistle.EventTypeRegistrar;
+import org.coderclan.whistle.ReactiveEventPersistenter;
+import org.coderclan.whistle.RetryBackoff;
+import org.coderclan.whistle.WhistleConfigurationProperties;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+import org.coderclan.whistle.exception.EventPersistenceException;
+import org.coderclan.whistle.exception.EventRetrievalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link ReactiveEventPersistenter} backed by an R2DBC {@link ConnectionFactory}, storing the events in the same table
+ * layout as {@link org.coderclan.whistle.rdbms.AbstractRdbmsEventPersistenter}, so that blocking and reactive services
+ * may share one table.
+ * <p>
+ * Statements are executed by a {@link DatabaseClient}, which binds to the connection of the current reactive
+ * transaction of the subscriber context: {@link #persistEvent(EventType, EventContent)} commits or rolls back with the
+ * business data. Retry batches are claimed in a transaction of their own, like the JDBC persistenters do.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+public abstract class AbstractR2dbcEventPersistenter implements ReactiveEventPersistenter {
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractR2dbcEventPersistenter.class);
+    private static final int MAX_ERROR_LENGTH = 1024;
+    private static final String IDS = "ids";
+
+    protected final ConnectionFactory connectionFactory;
+    protected final DatabaseClient client;
+    protected final EventContentSerializer serializer;
+    protected final EventTypeRegistrar eventTypeRegistrar;
+    protected final String tableName;
+
+    private final String insertSql;
+    private final String confirmSql;
+    private final String claimByIdsSql;
+    private final String retrieveSql;
+    private final int maxRetryCount;
+    private final String deadLetterTableName;
+    private final String deadLetterInsertSql;
+    private final String deleteByIdSql;
+    private final boolean supportsSkipLocked;
+    private final boolean supportsNowait;
+    private final int retrieveTransactionTimeout;
+    private final int leaseDuration;
+    private final String nodeId;
+    private final RetryBackoff backoff;
+    private final TransactionalOperator claimTransaction;
+    private final boolean rawPayload;
+
+    protected AbstractR2dbcEventPersistenter(ConnectionFactory connectionFactory, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, WhistleConfigurationProperties properties) {
+        this.connectionFactory = connectionFactory;
+        this.client = DatabaseClient.create(connectionFactory);
+        this.serializer = serializer;
+        this.eventTypeRegistrar = eventTypeRegistrar;
+        this.tableName = properties.getPersistentTableName();
+        this.leaseDuration = Math.max(1, properties.getLeaseDuration());
+        this.nodeId = properties.getNodeId();
+        this.backoff = new RetryBackoff(properties);
+        this.rawPayload = properties.isRawPayload();
+        this.retrieveTransactionTimeout = properties.getRetrieveTransactionTimeout();
+        this.maxRetryCount = Math.max(0, properties.getMaxRetryCount());
+        this.deadLetterTableName = Objects.isNull(properties.getDeadLetterTableName()) ? tableName + "_dead" : properties.getDeadLetterTableName();
+
+        String dueAt = getTimestampAfterSql(String.valueOf(leaseDuration));
+        this.insertSql = "insert into " + tableName + " (event_type,event_content,next_attempt_at)values(:type,:content," + dueAt + ")";
+        this.confirmSql = properties.isDeleteOnConfirm()
+                ? "delete from " + tableName + " where id in (:" + IDS + ")"
+                : "update " + tableName + " set success=true where id in (:" + IDS + ")";
+        this.claimByIdsSql = "update " + tableName + " set " + getLeaseSetClause() + ", retried_count=retried_count+1 where id in (:" + IDS + ")";
+        this.deadLetterInsertSql = "insert into " + deadLetterTableName + " (id,event_type,event_content,retried_count,create_time,last_error) "
+                + "select id,event_type,event_content,retried_count,create_time,:error from " + tableName + " where id=:id";
+        this.deleteByIdSql = "delete from " + tableName + " where id=:id";
+
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        definition.setTimeout(retrieveTransactionTimeout);
+        this.claimTransaction = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory), definition);
+
+        createTable();
+
+        this.supportsSkipLocked = R2dbcLockFeatureProbe.probeFeature(connectionFactory, tableName, "SKIP LOCKED");
+        this.supportsNowait = R2dbcLockFeatureProbe.probeFeature(connectionFactory, tableName, "NOWAIT");
+        this.retrieveSql = withLockingClause(getOrderedBaseRetrieveSql(Constants.RETRY_BATCH_COUNT));
+
+        String strategy;
+        if (supportsSkipLocked) {
+            strategy = "SKIP LOCKED";
+        } else if (supportsNowait) {
+            strategy = "NOWAIT";
+        } else {
+            strategy = "FOR UPDATE";
+        }
+        log.info("Locking strategy for table '{}' (R2DBC): {}", tableName, strategy);
+        log.info("Events in table '{}' are leased to node '{}' for {}s when claimed.", tableName, nodeId, leaseDuration);
+        if (properties.isDeleteOnConfirm()) {
+            log.info("Events in table '{}' are deleted on confirmation.", tableName);
+        }
+    }
+
+    protected abstract String[] getCreateTableSql();
+
+    /**
+     * Return the base retrieve SQL with deterministic ordering, without any locking clause.
+     * The columns are id, event_type, event_content and retried_count, see
+     * {@link org.coderclan.whistle.rdbms.AbstractRdbmsEventPersistenter#getOrderedBaseRetrieveSql(int)}.
+     *
+     * @param count the maximum number of rows to retrieve
+     * @return the ordered base SQL string
+     */
+    protected abstract String getOrderedBaseRetrieveSql(int count);
+
+    /**
+     * Return the SQL deleting at most {@code count} confirmed events whose last update (the confirmation)
+     * is older than {@code retention} seconds, oldest events first.
+     *
+     * @param retention retention of confirmed events, in seconds
+     * @param count     the maximum number of rows to delete
+     * @return the purge SQL string
+     */
+    protected String getPurgeSql(int retention, int count) {
+        return "delete from " + tableName + " where id in (select id from " + tableName
+                + " where success=true and update_time<current_timestamp - INTERVAL '" + retention + "' second "
+                + "order by id asc limit " + count + ")";
+    }
+
+    /**
+     * Return the SQL adding the columns {@code claimed_by} and {@code next_attempt_at} to tables created by older
+     * versions. Failures (e.g. the columns already exist) are skipped.
+     *
+     * @return column creation SQL statements
+     */
+    protected String[] getAddColumnsSql() {
+        return new String[]{
+                "alter table " + tableName + " add column if not exists claimed_by varchar(128)",
+                "alter table " + tableName + " add column if not exists next_attempt_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP"
+        };
+    }
+
+    /**
+     * Return the SQL creating the retry indexes, named like the ones of the JDBC persistenters.
+     *
+     * @return index creation SQL statements
+     */
+    protected String[] getCreateIndexSql() {
+        return new String[]{
+                "create index idx_" + tableName + "_retry on " + tableName + " (success, retried_count, id desc)",
+                "create index idx_" + tableName + "_due on " + tableName + " (success, next_attempt_at)"
+        };
+    }
+
+    /**
+     * Return the SQL creating the dead-letter table, see
+     * {@link org.coderclan.whistle.rdbms.AbstractRdbmsEventPersistenter#getCreateDeadLetterTableSql(String)}.
+     *
+     * @param deadLetterTableName name of the dead-letter table
+     * @return table creation SQL statements
+     */
+    @SuppressWarnings("java:S1192")
+    protected String[] getCreateDeadLetterTableSql(String deadLetterTableName) {
+        return new String[]{"CREATE TABLE IF NOT EXISTS " + deadLetterTableName + " (\n" +
+                "  id bigint NOT NULL,\n" +
+                "  event_type varchar(128) DEFAULT NULL,\n" +
+                "  event_content varchar(4096) NOT NULL,\n" +
+                "  retried_count int NOT NULL,\n" +
+                "  create_time timestamp NOT NULL,\n" +
+                "  dead_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,\n" +
+                "  last_error varchar(" + MAX_ERROR_LENGTH + "),\n" +
+                "  PRIMARY KEY (id)\n" +
+                ")"};
+    }
+
+    /**
+     * Return the SQL expression of the current timestamp plus a number of seconds.
+     *
+     * @param secondsExpression SQL expression of the number of seconds, may be fractional
+     * @return SQL expression
+     */
+    protected String getTimestampAfterSql(String secondsExpression) {
+        return "current_timestamp + (" + secondsExpression + ") * INTERVAL '1' second";
+    }
+
+    /**
+     * @return SQL expression of a random number in [0, 1), evaluated per row
+     */
+    protected String getRandomSql() {
+        return "rand()";
+    }
+
+    /**
+     * Return the SET clause leasing a row to this node and scheduling its next attempt, see
+     * {@link org.coderclan.whistle.rdbms.AbstractRdbmsEventPersistenter#getLeaseSetClause(String)}.
+     */
+    private String getLeaseSetClause() {
+        String backoffSeconds = "greatest(" + leaseDuration + ", least(" + backoff.getMax() + ", " + backoff.getBase() + " * power("
+                + BigDecimal.valueOf(backoff.getMultiplier()).toPlainString() + ", least(retried_count, "
+                + backoff.getMaxExponent() + "))) * (0.5 + 0.5 * " + getRandomSql() + "))";
+        return "claimed_by='" + nodeId.replace("'", "''") + "', next_attempt_at=" + getTimestampAfterSql(backoffSeconds);
+    }
+
+    private String withLockingClause(String orderedBaseSql) {
+        if (supportsSkipLocked) {
+            return orderedBaseSql + " for update skip locked";
+        } else if (supportsNowait) {
+            return orderedBaseSql + " for update nowait";
+        } else {
+            return orderedBaseSql + " for update";
+        }
+    }
+
+    /**
+     * Persist the event in the reactive transaction of the subscriber context, if any.
+     *
+     * @return Database Event ID (Primary Key of SYS_UNSENT_EVENT)
+     */
+    @Override
+    public <C extends EventContent> Mono<String> persistEvent(EventType<C> type, C content) {
+        return Mono.defer(() -> insert(type, this.serializer.toJson(content)));
+    }
+
+    /**
+     * Persist the event, storing its pre-serialized payload if it carries one.
+     */
+    @Override
+    public <C extends EventContent> Mono<String> persistEvent(Event<C> event) {
+        return Mono.defer(() -> insert(event.getType(), Objects.isNull(event.getPayload())
+                ? this.serializer.toJson(event.getContent()) : new String(event.getPayload(), StandardCharsets.UTF_8)));
+    }
+
+    private Mono<String> insert(EventType<?> type, String json) {
+        return client.sql(insertSql)
+                .bind("type", type.getName())
+                .bind("content", json)
+                .filter(statement -> statement.returnGeneratedValues("id"))
+                .map((row, metadata) -> String.valueOf(row.get(0)))
+                .one()
+                .doOnNext(id -> log.debug("Event persist to database, id={},type={},eventContent={}", id, type, json))
+                .onErrorMap(e -> new EventPersistenceException("Event persist to database failed, type=" + type + ", eventContent=" + json, e));
+    }
+
+    /**
+     * Confirm all events with one statement. Failures are logged, the events are re-delivered later.
+     */
+    @Override
+    public Mono<Void> confirmEvents(Collection<String> persistentEventIds) {
+        if (persistentEventIds.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> client.sql(confirmSql).bind(IDS, toDbIds(persistentEventIds)).then())
+                .doOnSuccess(v -> log.debug("Confirm events: persistentEventIds={}", persistentEventIds))
+                .doOnError(e -> log.error("Failed to confirm events, count={}", persistentEventIds.size(), e))
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    /**
+     * Claim at most {@code count} unconfirmed events whose lease expired, in a transaction of its own, see
+     * {@link org.coderclan.whistle.rdbms.AbstractRdbmsEventPersistenter#retrieveUnconfirmedEvent(int)}.
+     * Fails with {@link EventRetrievalException} if the rows could not be locked in time.
+     */
+    @Override
+    public Mono<List<Event<?>>> retrieveUnconfirmedEvent(int count) {
+        String sql = count == Constants.RETRY_BATCH_COUNT ? retrieveSql : withLockingClause(getOrderedBaseRetrieveSql(count));
+        log.trace("retrieveUnconfirmedEvent() entry — sql={}", sql);
+        return claim(sql, count)
+                .timeout(Duration.ofSeconds(Math.max(1, retrieveTransactionTimeout)))
+                .as(claimTransaction::transactional)
+                .flatMap(this::toEvents)
+                .onErrorResume(e -> !isLockContention(e), e -> {
+                    log.error("Failed to retrieve unconfirmed events (timeout={}s): {}", this.retrieveTransactionTimeout, e.getMessage(), e);
+                    return Mono.just(Collections.<Event<?>>emptyList());
+                })
+                .onErrorMap(e -> new EventRetrievalException("Failed to lock unconfirmed events (timeout=" + this.retrieveTransactionTimeout + "s), count=" + count, e));
+    }
+
+    @Override
+    public Mono<Integer> purgeConfirmedEvents(int retention, int limit) {
+        return client.sql(getPurgeSql(retention, limit)).fetch().rowsUpdated()
+                .map(Number::intValue)
+                .doOnError(e -> log.error("Failed to purge confirmed events of table '{}'", tableName, e))
+                .onErrorReturn(0);
+    }
+
+    /**
+     * Lock the batch with one query, then increment the retried_count and lease the whole batch with one update.
+     */
+    private Mono<List<UnconfirmedRow>> claim(String sql, int count) {
+        return client.sql(sql)
+                .map((row, metadata) -> new UnconfirmedRow(String.valueOf(row.get(0)), row.get(1, String.class),
+                        row.get(2, String.class), ((Number) Objects.requireNonNull(row.get(3))).intValue()))
+                .all()
+                .take(count)
+                .collectList()
+                .flatMap(rows -> {
+                    if (rows.isEmpty()) {
+                        return Mono.just(rows);
+                    }
+                    List<Long> ids = new ArrayList<>(rows.size());
+                    for (UnconfirmedRow row : rows) {
+                        ids.add(Long.parseLong(row.id));
+                    }
+                    return client.sql(claimByIdsSql).bind(IDS, ids).then().thenReturn(rows);
+                });
+    }
+
+    /**
+     * Convert the claimed rows, after the claim is committed, see
+     * {@link org.coderclan.whistle.rdbms.AbstractRdbmsEventPersistenter#retrieveUnconfirmedEvent(int)}. The rows which
+     * still can not be converted after {@code maxRetryCount} retries are then parked. Rows which can be converted stay
+     * in the table, whatever their retried_count.
+     */
+    private Mono<List<Event<?>>> toEvents(List<UnconfirmedRow> rows) {
+        List<Event<?>> events = new ArrayList<>(rows.size());
+        List<UnconfirmedRow> poison = new ArrayList<>();
+        for (UnconfirmedRow row : rows) {
+            Event<?> event = toEvent(row);
+            if (Objects.nonNull(event)) {
+                events.add(event);
+            } else if (maxRetryCount > 0 && row.retriedCount >= maxRetryCount) {
+                poison.add(row);
+            }
+        }
+        log.trace("retrieveUnconfirmedEvent() — returning {} event(s)", events.size());
+        return poison.isEmpty() ? Mono.just(events) : parkPoisonRows(poison).thenReturn(events);
+    }
+
+    /**
+     * @return the event of the row, or {@code null} if the row can not be converted, with {@link UnconfirmedRow#error} set
+     */
+    private Event<?> toEvent(UnconfirmedRow row) {
+        EventType<?> type = eventTypeRegistrar.findEventType(row.type);
+        if (Objects.isNull(type)) {
+            log.error("Unrecognized Event Type: {}.", row.type);
+            row.error = "Unrecognized Event Type: " + row.type;
+            return null;
+        }
+        if (rawPayload) {
+            // sent as stored, without deserializing the content.
+            return createRawEvent(row.id, type, row.content);
+        }
+        try {
+            EventContent eventContent = serializer.toEventContent(row.content, type.getContentType());
+            return createEvent(row.id, type, eventContent);
+        } catch (RuntimeException e) {
+            log.error("Failed to deserialize event, id={}, type={}", row.id, row.type, e);
+            row.error = "Failed to deserialize event content: " + e;
+            return null;
+        }
+    }
+
+    /**
+     * Move the rows to the dead-letter table, with their last error, in a transaction of their own. If they can not be
+     * moved, they are claimed again once their lease expires.
+     */
+    private Mono<Void> parkPoisonRows(List<UnconfirmedRow> poison) {
+        return Flux.fromIterable(poison)
+                .concatMap(row -> {
+                    String error = row.error;
+                    log.warn("Event moved to dead-letter table '{}', id={}, type={}: {}", deadLetterTableName, row.id, row.type, error);
+                    Long id = Long.parseLong(row.id);
+                    return client.sql(deadLetterInsertSql)
+                            .bind("error", error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error)
+                            .bind("id", id)
+                            .then()
+                            .then(client.sql(deleteByIdSql).bind("id", id).then());
+                })
+                .then()
+                .as(claimTransaction::transactional)
+                .doOnError(e -> log.error("Failed to move {} event(s) to dead-letter table '{}': {}", poison.size(), deadLetterTableName, e.getMessage(), e))
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    private static List<Long> toDbIds(Collection<String> persistentEventIds) {
+        List<Long> ids = new ArrayList<>(persistentEventIds.size());
+        for (String persistentEventId : persistentEventIds) {
+            ids.add(Long.parseLong(persistentEventId));
+        }
+        return ids;
+    }
+
+    /**
+     * Whether the exception is caused by lock contention or a timeout rather than by a broken statement or connection.
+     */
+    private static boolean isLockContention(Throwable e) {
+        return e instanceof TransientDataAccessException || e instanceof R2dbcTransientException || e instanceof TimeoutException;
+    }
+
+    /**
+     * Create the event table, its retry indexes and the dead-letter table if they do not exist. Blocks, it is only
+     * called at startup.
+     */
+    public void createTable() {
+        log.info("Persistent Event table name: {}", this.tableName);
+        List<String> statements = new ArrayList<>();
+        Collections.addAll(statements, getCreateTableSql());
+        Collections.addAll(statements, getAddColumnsSql());
+        Collections.addAll(statements, getCreateIndexSql());
+        if (maxRetryCount > 0) {
+            log.info("Events which can not be converted after {} retries are moved to dead-letter table '{}'", maxRetryCount, deadLetterTableName);
+            Collections.addAll(statements, getCreateDeadLetterTableSql(deadLetterTableName));
+        }
+        Flux.fromIterable(statements)
+                .concatMap(sql -> client.sql(sql).then()
+                        .onErrorResume(e -> {
+                            log.debug("Table creation SQL skipped (may already exist): {}", sql, e);
+                            return Mono.empty();
+                        }))
+                .then()
+                .block();
+    }
+
+    private static <C extends EventContent> Event<C> createRawEvent(String id, EventType<C> type, String json) {
+        return new Event<>(id, type, null, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <C extends EventContent> Event<C> createEvent(String id, EventType<C> type, EventContent content) {
+        return new Event<>(id, type, (C) content);
+    }
+
+    private static final class UnconfirmedRow {
+        private final String id;
+        private final String type;
+        private final String content;
+        private final int retriedCount;
+        /**
+         * Why the row could not be converted to an event, set after the claim.
+         */
+        private String error;
+
+        private UnconfirmedRow(String id, String type, String content, int retriedCount) {
+            this.id = id;
+            this.type = type;
+            this.content = content;
+            this.retriedCount = retriedCount;
+        }
+    }
+}
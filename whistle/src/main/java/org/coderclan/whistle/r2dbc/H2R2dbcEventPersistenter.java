@@ -0,0 +1,55 @@
+package org.coderclan.whistle.r2dbc;
+
+import io.r2dbc.spi.ConnectionFactory;
+import net.jcip.annotations.ThreadSafe;
+import org.coderclan.whistle.EventContentSerializer;
+import org.coderclan.whistle.EventTypeRegistrar;
+import org.coderclan.whistle.WhistleConfigurationProperties;
+
+
+/**
+ * R2DBC counterpart of {@link org.coderclan.whistle.rdbms.H2EventPersistenter}, same table layout.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class H2R2dbcEventPersistenter extends AbstractR2dbcEventPersistenter {
+
+    public H2R2dbcEventPersistenter(ConnectionFactory connectionFactory, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, WhistleConfigurationProperties properties) {
+        super(connectionFactory, serializer, eventTypeRegistrar, properties);
+    }
+
+    @SuppressWarnings("java:S1192")
+    protected String[] getCreateTableSql() {
+        return new String[]{"CREATE TABLE IF NOT EXISTS  " + tableName + " (\n" +
+                "  id int NOT NULL AUTO_INCREMENT,\n" +
+                "  event_type varchar(128) DEFAULT NULL,\n" +
+                "  retried_count int NOT NULL DEFAULT '0',\n" +
+                "  event_content varchar(4096) NOT NULL,\n" +
+                "  success boolean NOT NULL default false ,\n" +
+                "  create_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ,\n" +
+                "  update_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP ,\n" +
+                "  PRIMARY KEY (id)\n" +
+                ")"};
+    }
+
+    @Override
+    protected String[] getCreateIndexSql() {
+        return new String[]{
+                "create index if not exists idx_" + tableName + "_retry on " + tableName + " (success, retried_count, id desc)",
+                "create index if not exists idx_" + tableName + "_due on " + tableName + " (success, next_attempt_at)"
+        };
+    }
+
+    @Override
+    protected String getTimestampAfterSql(String secondsExpression) {
+        return "dateadd(MILLISECOND, cast((" + secondsExpression + ") * 1000 as bigint), current_timestamp)";
+    }
+
+    @Override
+    protected String getOrderedBaseRetrieveSql(int count) {
+        return "select id,event_type,event_content,retried_count from " + tableName
+                + " where success=false and next_attempt_at<current_timestamp "
+                + "order by retried_count asc, id desc limit " + count;
+    }
+}
@@ -0,0 +1,67 @@
+package org.coderclan.whistle.r2dbc;
+
+import io.r2dbc.spi.ConnectionFactory;
+import net.jcip.annotations.ThreadSafe;
+import org.coderclan.whistle.EventContentSerializer;
+import org.coderclan.whistle.EventTypeRegistrar;
+import org.coderclan.whistle.WhistleConfigurationProperties;
+
+
+/**
+ * R2DBC counterpart of {@link org.coderclan.whistle.rdbms.MysqlEventPersistenter}, same table layout.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class MysqlR2dbcEventPersistenter extends AbstractR2dbcEventPersistenter {
+
+    public MysqlR2dbcEventPersistenter(ConnectionFactory connectionFactory, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, WhistleConfigurationProperties properties) {
+        super(connectionFactory, serializer, eventTypeRegistrar, properties);
+    }
+
+    @SuppressWarnings("java:S1192")
+    protected String[] getCreateTableSql() {
+        return new String[]{"CREATE TABLE IF NOT EXISTS  " + tableName + " (\n" +
+                "  id int unsigned NOT NULL AUTO_INCREMENT,\n" +
+                "  event_type varchar(128) DEFAULT NULL,\n" +
+                "  retried_count int unsigned NOT NULL DEFAULT '0',\n" +
+                "  event_content varchar(4096) NOT NULL,\n" +
+                "  success boolean NOT NULL default false ,\n" +
+                "  create_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ,\n" +
+                "  update_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP ,\n" +
+                "  PRIMARY KEY (id)\n" +
+                ")"};
+    }
+
+    /**
+     * MySQL does not support LIMIT in an IN subquery, but supports ORDER BY and LIMIT in DELETE.
+     */
+    @Override
+    protected String getPurgeSql(int retention, int count) {
+        return "delete from " + tableName + " where success=true and update_time<now()- INTERVAL " + retention + " second "
+                + "order by id asc limit " + count;
+    }
+
+    @Override
+    protected String getTimestampAfterSql(String secondsExpression) {
+        return "now() + INTERVAL (" + secondsExpression + ") second";
+    }
+
+    /**
+     * MySQL does not support {@code add column if not exists}, the statements fail if the columns already exist.
+     */
+    @Override
+    protected String[] getAddColumnsSql() {
+        return new String[]{
+                "alter table " + tableName + " add column claimed_by varchar(128) DEFAULT NULL",
+                "alter table " + tableName + " add column next_attempt_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP"
+        };
+    }
+
+    @Override
+    protected String getOrderedBaseRetrieveSql(int count) {
+        return "select id,event_type,event_content,retried_count from " + tableName
+                + " where success=false and next_attempt_at<now() "
+                + "order by retried_count asc, id desc limit " + count;
+    }
+}
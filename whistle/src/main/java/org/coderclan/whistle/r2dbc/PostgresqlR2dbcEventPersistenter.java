@@ -0,0 +1,66 @@
+package org.coderclan.whistle.r2dbc;
+
+import io.r2dbc.spi.ConnectionFactory;
+import net.jcip.annotations.ThreadSafe;
+import org.coderclan.whistle.EventContentSerializer;
+import org.coderclan.whistle.EventTypeRegistrar;
+import org.coderclan.whistle.WhistleConfigurationProperties;
+
+
+/**
+ * R2DBC counterpart of {@link org.coderclan.whistle.rdbms.PostgresqlEventPersistenter}, same table layout.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class PostgresqlR2dbcEventPersistenter extends AbstractR2dbcEventPersistenter {
+    private static final String UPDATE_TIME_FUNCTION_SQL = "create or replace function sys_fun_update_time() returns trigger AS $$\n" +
+            "begin\n" +
+            "    new.update_time = current_timestamp;\n" +
+            "    return new;\n" +
+            "END;\n" +
+            "$$ language plpgsql;";
+
+    public PostgresqlR2dbcEventPersistenter(ConnectionFactory connectionFactory, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, WhistleConfigurationProperties properties) {
+        super(connectionFactory, serializer, eventTypeRegistrar, properties);
+    }
+
+    @SuppressWarnings("java:S1192")
+    protected String[] getCreateTableSql() {
+        return new String[]{"CREATE TABLE IF NOT EXISTS  " + tableName + " (\n" +
+                "  id bigserial PRIMARY KEY,\n" +
+                "  event_type varchar(128) DEFAULT NULL,\n" +
+                "  retried_count int NOT NULL DEFAULT '0',\n" +
+                "  event_content varchar(4096) NOT NULL,\n" +
+                "  success boolean NOT NULL default false ,\n" +
+                "  create_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ,\n" +
+                "  update_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP  \n" +
+                ")",
+                UPDATE_TIME_FUNCTION_SQL,
+                "CREATE TRIGGER trigger_" + tableName + " before update on " + tableName + " for each row execute procedure sys_fun_update_time();"
+        };
+    }
+
+    /**
+     * Partial index, so that the index only holds the unsent rows and stays small however large the table grows.
+     */
+    @Override
+    protected String[] getCreateIndexSql() {
+        return new String[]{
+                "create index if not exists idx_" + tableName + "_retry on " + tableName + " (retried_count, id desc) where success = false",
+                "create index if not exists idx_" + tableName + "_due on " + tableName + " (next_attempt_at) where success = false"
+        };
+    }
+
+    @Override
+    protected String getOrderedBaseRetrieveSql(int count) {
+        return "select id,event_type,event_content,retried_count from " + tableName
+                + " where success=false and next_attempt_at<current_timestamp "
+                + "order by retried_count asc, id desc limit " + count;
+    }
+
+    @Override
+    protected String getRandomSql() {
+        return "random()";
+    }
+}
@@ -0,0 +1,56 @@
+package org.coderclan.whistle.r2dbc;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC counterpart of {@link org.coderclan.whistle.rdbms.LockFeatureProbe}: probes the database to determine whether
+ * a given {@code FOR UPDATE} locking clause is supported.
+ *
+ * <p>Each probe executes {@code SELECT * FROM <table> WHERE 1=0 FOR UPDATE <clause>}
+ * inside a rolled-back transaction on a dedicated connection, so it is
+ * side-effect-free and safe to run at startup. It blocks until the probe completes.</p>
+ */
+public final class R2dbcLockFeatureProbe {
+
+    private static final Logger log = LoggerFactory.getLogger(R2dbcLockFeatureProbe.class);
+
+    private R2dbcLockFeatureProbe() {
+    }
+
+    /**
+     * Test whether the database accepts a given {@code FOR UPDATE} clause.
+     * Uses {@code WHERE 1=0} so no rows are touched. Always rolls back.
+     *
+     * @param connectionFactory the ConnectionFactory to obtain a connection from
+     * @param tableName         the event table to probe against
+     * @param clause            the locking clause to test, e.g. {@code "SKIP LOCKED"} or {@code "NOWAIT"}
+     * @return {@code true} if the database accepted the clause, {@code false} otherwise
+     */
+    public static boolean probeFeature(ConnectionFactory connectionFactory, String tableName, String clause) {
+        log.trace("probeFeature() entry — table='{}', clause='{}'", tableName, clause);
+        String sql = "SELECT * FROM " + tableName + " WHERE 1=0 FOR UPDATE " + clause;
+        Boolean supported = Mono.usingWhen(connectionFactory.create(), conn -> probe(conn, sql), Connection::close)
+                .doOnNext(s -> log.trace("probeFeature() — clause '{}' supported on table '{}'", clause, tableName))
+                .onErrorResume(e -> {
+                    log.debug("Probe for '{}' not supported: {}", clause, e.getMessage());
+                    return Mono.just(false);
+                })
+                .block();
+        return Boolean.TRUE.equals(supported);
+    }
+
+    private static Mono<Boolean> probe(Connection conn, String sql) {
+        log.trace("Executing probe SQL: {}", sql);
+        Mono<Void> rollback = Mono.from(conn.rollbackTransaction());
+        return Mono.from(conn.beginTransaction())
+                .thenMany(Flux.from(conn.createStatement(sql).execute()).flatMap(result -> result.map((row, metadata) -> 1)))
+                .then(rollback)
+                .thenReturn(true)
+                .onErrorResume(e -> rollback.onErrorResume(ignored -> Mono.empty()).then(Mono.error(e)));
+    }
+}
@@ -4,21 +4,26 @@ import org.coderclan.whistle.*;
 import org.coderclan.whistle.api.EventContent;
 import org.coderclan.whistle.api.EventType;
 import org.coderclan.whistle.exception.EventPersistenceException;
+import org.coderclan.whistle.exception.EventRetrievalException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.LongSupplier;
 
 public abstract class AbstractRdbmsEventPersistenter implements EventPersistenter {
 
     private static final Logger log = LoggerFactory.getLogger(AbstractRdbmsEventPersistenter.class);
+    private static final int MAX_ERROR_LENGTH = 1024;
 
     protected final DataSource dataSource;
 
@@ -30,22 +35,68 @@ public abstract class AbstractRdbmsEventPersistenter implements EventPersistente
     protected final String retrieveSql;
     protected final String[] createTableSql;
     private final String insertSql;
+    private final String claimByIdSql;
+    private final int maxRetryCount;
+    private final String deadLetterTableName;
+    private final String deadLetterInsertSql;
+    private final String deleteByIdSql;
+    private final String releaseSql;
 
     private final boolean supportsSkipLocked;
     private final boolean supportsNowait;
     private final int retrieveTransactionTimeout;
+    private final boolean partitioned;
+    private final int leaseDuration;
+    private final String nodeId;
+    private final RetryBackoff backoff;
+    private final int partitionInterval;
+    private final int partitionsAhead;
+    private final String leaseTableName;
+    private volatile LeaseRegistry leaseRegistry;
+    /**
+     * The highest id which may be retried, see {@link #setRetryCeiling(LongSupplier)}. Null if not bounded.
+     */
+    private volatile LongSupplier retryCeiling;
+    private final boolean rawPayload;
 
     protected AbstractRdbmsEventPersistenter(DataSource dataSource, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, String tableName, int retrieveTransactionTimeout) {
+        this(dataSource, serializer, eventTypeRegistrar, defaultProperties(tableName, retrieveTransactionTimeout));
+    }
+
+    protected AbstractRdbmsEventPersistenter(DataSource dataSource, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, WhistleConfigurationProperties properties) {
+        int retrieveTransactionTimeout = properties.getRetrieveTransactionTimeout();
         this.dataSource = dataSource;
         this.serializer = serializer;
         this.eventTypeRegistrar = eventTypeRegistrar;
-        this.tableName = tableName;
-        this.confirmSql = getConfirmSql();
+        this.tableName = properties.getPersistentTableName();
+        this.leaseDuration = Math.max(1, properties.getLeaseDuration());
+        this.nodeId = properties.getNodeId();
+        this.backoff = new RetryBackoff(properties);
+        this.confirmSql = properties.isDeleteOnConfirm() ? getDeleteOnConfirmSql() : getConfirmSql();
+        this.partitioned = properties.isPartitionedTable() && supportsPartitioning();
+        this.partitionInterval = Math.max(1, properties.getPartitionInterval());
+        this.partitionsAhead = Math.max(1, properties.getPartitionsAhead());
+        this.leaseTableName = properties.getLeaseTableName();
+        this.rawPayload = properties.isRawPayload();
+        if (properties.isPartitionedTable() && !partitioned) {
+            log.warn("Partitioned table is not supported by {}, table '{}' is not partitioned.", getClass().getSimpleName(), tableName);
+        }
 
-        this.createTableSql = getCreateTableSql();
+        this.createTableSql = partitioned ? getCreatePartitionedTableSql() : getCreateTableSql();
         this.insertSql = getInsertSql();
+        this.claimByIdSql = "update " + tableName + " set " + getLeaseSetClause("") + ", retried_count=retried_count+1 where " + getRowIdentifierColumn() + "=?";
+        this.maxRetryCount = Math.max(0, properties.getMaxRetryCount());
+        this.deadLetterTableName = Objects.isNull(properties.getDeadLetterTableName()) ? tableName + "_dead" : properties.getDeadLetterTableName();
+        this.deadLetterInsertSql = "insert into " + deadLetterTableName + " (id,event_type,event_content,retried_count,create_time,last_error) "
+                + "select id,event_type,event_content,retried_count,create_time,? from " + tableName + " where " + getRowIdentifierColumn() + "=?";
+        this.deleteByIdSql = "delete from " + tableName + " where " + getRowIdentifierColumn() + "=?";
+        this.releaseSql = "update " + tableName + " set next_attempt_at=" + getTimestampAfterSql("0") + " where " + getRowIdentifierColumn() + "=? and retried_count=0";
 
         createTable();
+        if (partitioned) {
+            log.info("Table '{}' is partitioned by create_time, {} day(s) per partition, {} partition(s) ahead.", tableName, partitionInterval, partitionsAhead);
+            maintainPartitions(0);
+        }
 
         this.supportsSkipLocked = LockFeatureProbe.probeFeature(dataSource, tableName, "SKIP LOCKED");
         this.supportsNowait = LockFeatureProbe.probeFeature(dataSource, tableName, "NOWAIT");
@@ -62,13 +113,69 @@ public abstract class AbstractRdbmsEventPersistenter implements EventPersistente
         }
         log.info("Locking strategy for table '{}': {}", tableName, strategy);
         log.info("retrieveTransactionTimeout for table '{}': {}s", tableName, retrieveTransactionTimeout);
+        log.info("Events in table '{}' are leased to node '{}' for {}s when claimed.", tableName, nodeId, leaseDuration);
+        log.info("Retry backoff for table '{}': base={}s, multiplier={}, max={}s", tableName, backoff.getBase(), backoff.getMultiplier(), backoff.getMax());
+        if (properties.isDeleteOnConfirm()) {
+            log.info("Events in table '{}' are deleted on confirmation.", tableName);
+        }
+    }
+
+    private static WhistleConfigurationProperties defaultProperties(String tableName, int retrieveTransactionTimeout) {
+        WhistleConfigurationProperties properties = new WhistleConfigurationProperties();
+        properties.setPersistentTableName(tableName);
+        properties.setRetrieveTransactionTimeout(retrieveTransactionTimeout);
+        return properties;
     }
 
     protected abstract String getConfirmSql();
 
     protected abstract String[] getCreateTableSql();
 
-    protected abstract void fillDbId(PreparedStatement confirmEventStatement, String persistentEventId) throws SQLException;
+    /**
+     * Return the SQL deleting an event, used instead of {@link #getConfirmSql()} if events are deleted on confirmation.
+     * It takes the same parameter as {@link #getConfirmSql()}.
+     *
+     * @return the delete SQL string
+     */
+    protected String getDeleteOnConfirmSql() {
+        return "delete from " + tableName + " where id=?";
+    }
+
+    /**
+     * Return the SQL deleting at most {@code count} confirmed events whose last update (the confirmation)
+     * is older than {@code retention} seconds, oldest events first.
+     *
+     * @param retention retention of confirmed events, in seconds
+     * @param count     the maximum number of rows to delete
+     * @return the purge SQL string
+     */
+    protected String getPurgeSql(int retention, int count) {
+        return "delete from " + tableName + " where id in (select id from " + tableName
+                + " where success=true and update_time<current_timestamp - INTERVAL '" + retention + "' second "
+                + "order by id asc limit " + count + ")";
+    }
+
+    /**
+     * Bind the persistent event ID to the first parameter of the statement, see
+     * {@link #fillDbId(PreparedStatement, int, String)}.
+     *
+     * @param statement         statement to bind the ID to
+     * @param persistentEventId persistent event ID
+     * @throws SQLException if the parameter can not be set
+     */
+    protected void fillDbId(PreparedStatement statement, String persistentEventId) throws SQLException {
+        fillDbId(statement, 1, persistentEventId);
+    }
+
+    /**
+     * Bind the persistent event ID to the given parameter of the statement, with the type of the ID column.
+     *
+     * @param statement         statement to bind the ID to
+     * @param parameterIndex    index of the parameter, starting from 1
+     * @param persistentEventId persistent event ID
+     * @throws SQLException if the parameter can not be set
+     */
+    protected abstract void fillDbId(PreparedStatement statement, int parameterIndex, String persistentEventId) throws SQLException;
 
     /**
      * Return the base retrieve SQL with deterministic ordering, without any locking clause.
@@ -81,13 +188,66 @@ public abstract class AbstractRdbmsEventPersistenter implements EventPersistente
      */
     protected abstract String getOrderedBaseRetrieveSql(int count);
 
+    /**
+     * Return the ordered base retrieve SQL of one shard: {@link #getOrderedBaseRetrieveSql(int)} restricted to the
+     * rows whose id modulo {@code shardCount} is {@code shard}, without any locking clause.
+     *
+     * @param count      the maximum number of rows to retrieve
+     * @param shard      the shard, from 0 to {@code shardCount - 1}
+     * @param shardCount the number of shards
+     * @return the ordered shard SQL string, or {@code null} if sharding is not supported
+     */
+    protected String getOrderedShardRetrieveSql(int count, int shard, int shardCount) {
+        return null;
+    }
+
+    /**
+     * Return the ordered retrieve SQL of a second attempt, without any locking clause, for dialects which bound the
+     * locking query by pre-selecting a window of due rows before skipping the locked ones. It is run once, with
+     * SKIP LOCKED, when every row of the first window was locked by other claimers. At most {@code count} rows of it
+     * are read.
+     *
+     * @param count      the maximum number of rows to retrieve
+     * @param shard      the shard, from 0 to {@code shardCount - 1}
+     * @param shardCount the number of shards, 1 if not sharded
+     * @return the widened SQL string, or {@code null} (the default) if the query is not bounded by a window
+     */
+    protected String getWidenedOrderedRetrieveSql(int count, int shard, int shardCount) {
+        return null;
+    }
+
+    /**
+     * Only retry the events with an id up to the value of {@code retryCeiling}, e.g. the ones {@link OutboxRelay}
+     * published. A negative value stops the retries.
+     *
+     * @param retryCeiling supplier of the highest id which may be retried, read on every retrieval
+     */
+    void setRetryCeiling(LongSupplier retryCeiling) {
+        this.retryCeiling = retryCeiling;
+    }
+
+    /**
+     * Return the predicate restricting the retrieve SQL to the ids up to the retry ceiling, see
+     * {@link #setRetryCeiling(LongSupplier)}. Dialects append it to the WHERE clause of the ordered retrieve SQL.
+     *
+     * @return the predicate, e.g. {@code "and id<=42 "}, or an empty string if the retries are not bounded
+     */
+    protected final String getRetryCeilingPredicate() {
+        LongSupplier ceiling = this.retryCeiling;
+        return Objects.isNull(ceiling) ? "" : "and id<=" + ceiling.getAsLong() + " ";
+    }
+
     private String buildRetrieveSql(int count) {
+        return withLockingClause(getOrderedBaseRetrieveSql(count));
+    }
+
+    private String withLockingClause(String orderedBaseSql) {
         if (supportsSkipLocked) {
-            return getOrderedBaseRetrieveSql(count) + " for update skip locked";
+            return orderedBaseSql + " for update skip locked";
         } else if (supportsNowait) {
-            return getOrderedBaseRetrieveSql(count) + " for update nowait";
+            return orderedBaseSql + " for update nowait";
         } else {
-            return getOrderedBaseRetrieveSql(count) + " for update";
+            return orderedBaseSql + " for update";
         }
     }
 
@@ -101,9 +261,23 @@ public abstract class AbstractRdbmsEventPersistenter implements EventPersistente
     @Override
     public <C extends EventContent> String persistEvent(EventType<C> type, C content) {
         log.trace("persistEvent() entry — type={}", type);
+        return insert(type, this.serializer.toJson(content));
+    }
+
+    /**
+     * Persist the event, storing its pre-serialized payload if it carries one.
+     */
+    @Override
+    public <C extends EventContent> String persistEvent(Event<C> event) {
+        log.trace("persistEvent() entry — type={}", event.getType());
+        return insert(event.getType(), toJson(event));
+    }
 
-        String json = this.serializer.toJson(content);
+    private String toJson(Event<?> event) {
+        return Objects.isNull(event.getPayload()) ? this.serializer.toJson(event.getContent()) : new String(event.getPayload(), StandardCharsets.UTF_8);
+    }
 
+    private String insert(EventType<?> type, String json) {
         String eventDbId;
 
         // get Collection of current Transaction.
@@ -124,8 +298,67 @@ public abstract class AbstractRdbmsEventPersistenter implements EventPersistente
         return eventDbId;
     }
 
+    /**
+     * Persist all events of a transaction with one JDBC batch, so that the events cost one round trip
+     * instead of one round trip per event.
+     *
+     * @param events events to persist, in publishing order
+     * @return Database Event IDs, in the same order as {@code events}
+     */
+    @Override
+    public List<String> persistEvents(List<Event<?>> events) {
+        log.trace("persistEvents() entry — count={}", events.size());
+        if (events.size() <= 1 || !supportsBatchGeneratedKeys()) {
+            return EventPersistenter.super.persistEvents(events);
+        }
+
+        // get Collection of current Transaction.
+        // do NOT close this connection, it is managed by spring
+        Connection dbCon = DataSourceUtils.getConnection(this.dataSource);
+
+        try (PreparedStatement ps = dbCon.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+            for (Event<?> event : events) {
+                ps.setString(1, event.getType().getName());
+                ps.setString(2, toJson(event));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+
+            List<String> ids = new ArrayList<>(events.size());
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            }
+            if (ids.size() != events.size()) {
+                throw new EventPersistenceException("Generated keys count mismatch, expected=" + events.size() + ", actual=" + ids.size());
+            }
+            log.debug("Events persist to database in one batch, ids={}", ids);
+            return ids;
+        } catch (EventPersistenceException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EventPersistenceException("Event batch persist to database failed, count=" + events.size(), e);
+        }
+    }
+
+    /**
+     * Whether the JDBC driver returns the generated keys of every row of a batch insert.
+     * If not, {@link #persistEvents(List)} falls back to one insert per event.
+     *
+     * @return {@code true} by default
+     */
+    protected boolean supportsBatchGeneratedKeys() {
+        return true;
+    }
+
+    /**
+     * New events are due after {@code leaseDuration} seconds, so that they are not retried before the first delivery
+     * had a chance to be confirmed.
+     */
     protected String getInsertSql() {
-        return "insert into " + tableName + " (event_type,event_content)values(?,?)";
+        String dueAt = getTimestampAfterSql(String.valueOf(leaseDuration));
+        return "insert into " + tableName + " (event_type,event_content,next_attempt_at)values(?,?," + dueAt + ")";
     }
 
     @Override
@@ -149,66 +382,742 @@ public abstract class AbstractRdbmsEventPersistenter implements EventPersistente
     }
 
     /**
-     * Retrieve unconfirmed event.
+     * Confirm all events with one JDBC batch in one transaction.
      *
-     * @return
+     * @param persistentEventIds IDs of the events to confirm
      */
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public List<Event<?>> retrieveUnconfirmedEvent() {
-        log.trace("retrieveUnconfirmedEvent() entry — sql={}", retrieveSql);
+    public void confirmEvents(Collection<String> persistentEventIds) {
+        log.trace("confirmEvents() entry — count={}", persistentEventIds.size());
+        if (persistentEventIds.isEmpty()) {
+            return;
+        }
         // get Collection of current Transaction.
         // do NOT close this connection, it is managed by spring
         Connection conn = DataSourceUtils.getConnection(this.dataSource);
-        boolean originalAutoCommit = false;
+        try (PreparedStatement statement = conn.prepareStatement(confirmSql)) {
+            for (String persistentEventId : persistentEventIds) {
+                fillDbId(statement, persistentEventId);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            log.debug("Confirm events: persistentEventIds={}", persistentEventIds);
+        } catch (SQLException e) {
+            log.error("Failed to confirm events, count={}", persistentEventIds.size(), e);
+        }
+    }
+
+    @Override
+    public void releaseEvent(String persistentEventId) {
+        log.trace("releaseEvent() entry — persistentEventId={}", persistentEventId);
         try (
-                Statement statement = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_UPDATABLE)
+                Connection conn = dataSource.getConnection();
+                PreparedStatement statement = conn.prepareStatement(releaseSql)
         ) {
-            statement.setQueryTimeout(this.retrieveTransactionTimeout);
+            conn.setAutoCommit(true);
+            fillDbId(statement, persistentEventId);
+            if (statement.executeUpdate() > 0) {
+                log.debug("Event released for re-delivery: persistentEventId={}", persistentEventId);
+                afterRelease(conn);
+            }
+        } catch (SQLException e) {
+            log.error("Failed to release event, persistentEventId={}", persistentEventId, e);
+        }
+    }
 
-            ArrayList<Event<?>> tempList = new ArrayList<>();
+    /**
+     * Called after an event was released by {@link #releaseEvent(String)}, on the same connection.
+     *
+     * @param conn connection which released the event, in auto-commit mode
+     * @throws SQLException if the notification fails
+     */
+    protected void afterRelease(Connection conn) throws SQLException {
+        // nothing to do by default, the retrier finds the event at its next poll.
+    }
 
-            // set auto commit to false to lock row in database to prevent other thread to requeue.
-            originalAutoCommit = conn.getAutoCommit();
-            if (originalAutoCommit) {
-                conn.setAutoCommit(false);
-            }
+    /**
+     * Retrieve unconfirmed event.
+     *
+     * @return
+     */
+    @Override
+    public List<Event<?>> retrieveUnconfirmedEvent() {
+        return retrieveUnconfirmedEvent(Constants.RETRY_BATCH_COUNT);
+    }
+
+    /**
+     * Claim at most {@code count} unconfirmed events whose lease expired: the rows are leased to this node for
+     * {@code leaseDuration} seconds in a short transaction on a dedicated connection, which commits right away.
+     * The events are deserialized (and sent by the caller) after the row locks are released. Events which are not
+     * confirmed before their lease expires become claimable again.
+     *
+     * @param count the maximum number of events to retrieve
+     * @return retrieved events
+     * @throws EventRetrievalException if the rows could not be locked in time (lock wait timeout, NOWAIT failure,
+     *                                 deadlock or query timeout)
+     */
+    @Override
+    public List<Event<?>> retrieveUnconfirmedEvent(int count) {
+        boolean cached = count == Constants.RETRY_BATCH_COUNT && Objects.isNull(retryCeiling);
+        return retrieve(cached ? retrieveSql : buildRetrieveSql(count), count, 0, 1);
+    }
 
-            ResultSet rs = statement.executeQuery(retrieveSql);
-            int eventCount = 0;
-            while (rs.next() && eventCount < Constants.RETRY_BATCH_COUNT) {
-                eventCount++;
-                rs.updateInt(4, rs.getInt(4) + 1);
-                rs.updateRow();
+    /**
+     * Claim at most {@code count} unconfirmed events of one shard, see {@link #retrieveUnconfirmedEvent(int)}.
+     * Falls back to all shards if {@link #getOrderedShardRetrieveSql(int, int, int)} is not supported.
+     */
+    @Override
+    public List<Event<?>> retrieveUnconfirmedEvent(int count, int shard, int shardCount) {
+        String shardSql = shardCount > 1 ? getOrderedShardRetrieveSql(count, shard, shardCount) : null;
+        if (Objects.isNull(shardSql)) {
+            return retrieveUnconfirmedEvent(count);
+        }
+        return retrieve(withLockingClause(shardSql), count, shard, shardCount);
+    }
 
-                EventType<?> type = eventTypeRegistrar.findEventType(rs.getString(2));
-                if (Objects.isNull(type)) {
-                    if (log.isErrorEnabled()) {
-                        log.error("Unrecognized Event Type: {}.", rs.getString(2));
-                    }
-                } else {
-                    EventContent eventContent = serializer.toEventContent(rs.getString(3), type.getContentType());
-                    tempList.add(createEvent(rs.getString(1), type, eventContent));
-                }
+    @Override
+    public boolean supportsShardedRetrieval() {
+        return Objects.nonNull(getOrderedShardRetrieveSql(1, 0, 2));
+    }
+
+    private List<Event<?>> retrieve(String sql, int count, int shard, int shardCount) {
+        String claimSql = getClaimSql(sql);
+        log.trace("retrieveUnconfirmedEvent() entry — sql={}", Objects.isNull(claimSql) ? sql : claimSql);
+        List<UnconfirmedRow> rows;
+        try (Connection conn = dataSource.getConnection()) {
+            rows = claimInTransaction(conn, sql, claimSql, count);
+            String widenedSql = rows.isEmpty() && supportsSkipLocked ? getWidenedOrderedRetrieveSql(count, shard, shardCount) : null;
+            if (Objects.nonNull(widenedSql)) {
+                String lockingSql = withLockingClause(widenedSql);
+                log.trace("retrieveUnconfirmedEvent() — window locked by other claimers, widened sql={}", lockingSql);
+                rows = claimInTransaction(conn, lockingSql, getClaimSql(lockingSql), count);
             }
-            rs.close();
-            log.trace("retrieveUnconfirmedEvent() — returning {} event(s)", tempList.size());
-            return tempList;
         } catch (SQLException e) {
+            if (isLockContention(e)) {
+                throw new EventRetrievalException("Failed to lock unconfirmed events (queryTimeout=" + this.retrieveTransactionTimeout + "s), count=" + count, e);
+            }
             log.error("Failed to retrieve unconfirmed events (queryTimeout={}s): {}", this.retrieveTransactionTimeout, e.getMessage(), e);
-        } catch (Exception e) {
-            log.error("Unexpected error retrieving unconfirmed events", e);
+            return Collections.emptyList();
+        }
+
+        List<Event<?>> events = toEvents(rows);
+        log.trace("retrieveUnconfirmedEvent() — returning {} event(s)", events.size());
+        return events;
+    }
+
+    /**
+     * Lease the rows in a short transaction. Nothing is deserialized while the rows are locked.
+     */
+    private List<UnconfirmedRow> claimInTransaction(Connection conn, String sql, String claimSql, int count) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            List<UnconfirmedRow> rows = Objects.isNull(claimSql) ? selectAndClaim(conn, sql, count) : queryRows(conn, claimSql, count);
+            conn.commit();
+            return rows;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
         } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Return a single statement which locks the rows selected by {@code lockingRetrieveSql}, increments their
+     * retried_count, applies {@link #getLeaseSetClause(String)} and returns their identifier, event_type, event_content
+     * and retried_count before the claim.
+     * If {@code null} (the default), the rows are selected and then claimed by one batched update.
+     *
+     * @param lockingRetrieveSql the retrieve SQL, including its locking clause
+     * @return the claim SQL, or {@code null} if not supported
+     */
+    protected String getClaimSql(String lockingRetrieveSql) {
+        return null;
+    }
+
+    /**
+     * Return the SET clause leasing a row to this node and scheduling its next attempt after
+     * {@code max(leaseDuration, backoff(retried_count))} seconds. It reads the retried_count before the claim,
+     * so it must precede the retried_count increment in the statement.
+     *
+     * @param qualifier qualifier of the column references, e.g. {@code "t."}, or an empty string
+     * @return SET clause
+     */
+    protected String getLeaseSetClause(String qualifier) {
+        return "claimed_by='" + nodeId.replace("'", "''") + "', next_attempt_at="
+                + getTimestampAfterSql(getBackoffSecondsSql(qualifier + "retried_count"));
+    }
+
+    /**
+     * Return the SQL expression of the delay of the next attempt of a row, in seconds. See {@link RetryBackoff}.
+     *
+     * @param retriedCountColumn the retried_count column reference
+     * @return SQL expression
+     */
+    protected String getBackoffSecondsSql(String retriedCountColumn) {
+        return "greatest(" + leaseDuration + ", least(" + backoff.getMax() + ", " + backoff.getBase() + " * power("
+                + BigDecimal.valueOf(backoff.getMultiplier()).toPlainString() + ", least(" + retriedCountColumn + ", "
+                + backoff.getMaxExponent() + "))) * (0.5 + 0.5 * " + getRandomSql() + "))";
+    }
+
+    /**
+     * @return SQL expression of a random number in [0, 1), evaluated per row
+     */
+    protected String getRandomSql() {
+        return "rand()";
+    }
+
+    /**
+     * Return the SQL expression of the current timestamp plus a number of seconds.
+     *
+     * @param secondsExpression SQL expression of the number of seconds, may be fractional
+     * @return SQL expression
+     */
+    protected String getTimestampAfterSql(String secondsExpression) {
+        return "current_timestamp + (" + secondsExpression + ") * INTERVAL '1' second";
+    }
+
+    /**
+     * Return the SQL adding the columns introduced after the table creation SQL was first released:
+     * {@code claimed_by} and {@code next_attempt_at}.
+     * Executed at startup after {@link #getCreateTableSql()}, failures (e.g. the columns already exist) are skipped.
+     * Existing rows are due at once.
+     *
+     * @return column creation SQL statements
+     */
+    protected String[] getAddColumnsSql() {
+        return new String[]{
+                "alter table " + tableName + " add column if not exists claimed_by varchar(128)",
+                "alter table " + tableName + " add column if not exists next_attempt_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP"
+        };
+    }
+
+    /**
+     * Name of the index backing the {@code next_attempt_at} filter of {@link #getOrderedBaseRetrieveSql(int)}.
+     *
+     * @return index name
+     */
+    protected String getDueIndexName() {
+        return "idx_" + tableName + "_due";
+    }
+
+    /**
+     * @return the column identifying a row, as returned by the first column of {@link #getOrderedBaseRetrieveSql(int)}
+     */
+    protected String getRowIdentifierColumn() {
+        return "id";
+    }
+
+    /**
+     * Lock the batch with one query, then increment the retried_count and lease the whole batch with one JDBC batch:
+     * two round trips per batch instead of one per row.
+     */
+    private List<UnconfirmedRow> selectAndClaim(Connection conn, String sql, int count) throws SQLException {
+        List<UnconfirmedRow> rows = queryRows(conn, sql, count);
+        if (rows.isEmpty()) {
+            return rows;
+        }
+        try (PreparedStatement statement = conn.prepareStatement(claimByIdSql)) {
+            statement.setQueryTimeout(this.retrieveTransactionTimeout);
+            for (UnconfirmedRow row : rows) {
+                fillDbId(statement, row.id);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        return rows;
+    }
+
+    private List<UnconfirmedRow> queryRows(Connection conn, String sql, int count) throws SQLException {
+        List<UnconfirmedRow> rows = new ArrayList<>(count);
+        try (PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.setQueryTimeout(this.retrieveTransactionTimeout);
+            statement.setFetchSize(count);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next() && rows.size() < count) {
+                    rows.add(new UnconfirmedRow(rs.getString(1), rs.getString(2), rs.getString(3), rs.getInt(4)));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Convert the claimed rows, after the claim is committed. The rows which still can not be converted after
+     * {@code maxRetryCount} retries are then parked, see {@link #parkPoisonRows(List)}. Rows which can be converted
+     * stay in the table, whatever their retried_count.
+     */
+    private List<Event<?>> toEvents(List<UnconfirmedRow> rows) {
+        List<Event<?>> events = new ArrayList<>(rows.size());
+        List<UnconfirmedRow> poison = new ArrayList<>();
+        for (UnconfirmedRow row : rows) {
+            Event<?> event = toEvent(row);
+            if (Objects.nonNull(event)) {
+                events.add(event);
+            } else if (maxRetryCount > 0 && row.retriedCount >= maxRetryCount) {
+                poison.add(row);
+            }
+        }
+        if (!poison.isEmpty()) {
+            parkPoisonRows(poison);
+        }
+        return events;
+    }
+
+    /**
+     * @return the event of the row, or {@code null} if the row can not be converted, with {@link UnconfirmedRow#error} set
+     */
+    private Event<?> toEvent(UnconfirmedRow row) {
+        EventType<?> type = eventTypeRegistrar.findEventType(row.type);
+        if (Objects.isNull(type)) {
+            log.error("Unrecognized Event Type: {}.", row.type);
+            row.error = "Unrecognized Event Type: " + row.type;
+            return null;
+        }
+        if (rawPayload) {
+            // sent as stored, without deserializing the content.
+            return createRawEvent(row.id, type, row.content);
+        }
+        try {
+            EventContent eventContent = serializer.toEventContent(row.content, type.getContentType());
+            return createEvent(row.id, type, eventContent);
+        } catch (RuntimeException e) {
+            log.error("Failed to deserialize event, id={}, type={}", row.id, row.type, e);
+            row.error = "Failed to deserialize event content: " + e;
+            return null;
+        }
+    }
+
+    /**
+     * Move the rows to the dead-letter table, with their last error, in a transaction of their own. The rows are
+     * still leased to this node. If they can not be moved, they are claimed again once the lease expires.
+     */
+    private void parkPoisonRows(List<UnconfirmedRow> poison) {
+        try (
+                Connection conn = dataSource.getConnection();
+                PreparedStatement insert = conn.prepareStatement(deadLetterInsertSql);
+                PreparedStatement delete = conn.prepareStatement(deleteByIdSql)
+        ) {
+            conn.setAutoCommit(false);
             try {
-                if (originalAutoCommit) {
-                    conn.setAutoCommit(true);
+                for (UnconfirmedRow row : poison) {
+                    String error = row.error;
+                    log.warn("Event moved to dead-letter table '{}', id={}, type={}: {}", deadLetterTableName, row.id, row.type, error);
+                    insert.setString(1, error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+                    fillDbId(insert, 2, row.id);
+                    insert.addBatch();
+                    fillDbId(delete, 1, row.id);
+                    delete.addBatch();
+                }
+                insert.executeBatch();
+                delete.executeBatch();
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            log.error("Failed to move {} event(s) to dead-letter table '{}': {}", poison.size(), deadLetterTableName, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Return the SQL creating the dead-letter table which holds the events which still can not be converted after
+     * {@code maxRetryCount} retries, moved out of the persistent table with the last error.
+     * Executed at startup if {@code maxRetryCount} is positive.
+     *
+     * @param deadLetterTableName name of the dead-letter table
+     * @return table creation SQL statements
+     */
+    @SuppressWarnings("java:S1192")
+    protected String[] getCreateDeadLetterTableSql(String deadLetterTableName) {
+        return new String[]{"CREATE TABLE IF NOT EXISTS " + deadLetterTableName + " (\n" +
+                "  id bigint NOT NULL,\n" +
+                "  event_type varchar(128) DEFAULT NULL,\n" +
+                "  event_content varchar(4096) NOT NULL,\n" +
+                "  retried_count int NOT NULL,\n" +
+                "  create_time timestamp NOT NULL,\n" +
+                "  dead_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,\n" +
+                "  last_error varchar(" + MAX_ERROR_LENGTH + "),\n" +
+                "  PRIMARY KEY (id)\n" +
+                ")"};
+    }
+
+    /**
+     * Return the lease registry backed by the {@code leaseTableName} table, created on first use.
+     */
+    @Override
+    public LeaseRegistry getLeaseRegistry() {
+        LeaseRegistry registry = this.leaseRegistry;
+        if (Objects.isNull(registry)) {
+            synchronized (this) {
+                registry = this.leaseRegistry;
+                if (Objects.isNull(registry)) {
+                    registry = new RdbmsLeaseRegistry(this, leaseTableName);
+                    this.leaseRegistry = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Return the SQL creating the lease table of {@link RdbmsLeaseRegistry}, one row per lease.
+     *
+     * @param leaseTableName name of the lease table
+     * @return table creation SQL statements
+     */
+    @SuppressWarnings("java:S1192")
+    protected String[] getCreateLeaseTableSql(String leaseTableName) {
+        return new String[]{"CREATE TABLE IF NOT EXISTS " + leaseTableName + " (\n" +
+                "  lease_name varchar(255) NOT NULL,\n" +
+                "  claimed_by varchar(128),\n" +
+                "  lease_until timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,\n" +
+                "  PRIMARY KEY (lease_name)\n" +
+                ")"};
+    }
+
+    /**
+     * Return the predicate selecting the unconfirmed rows.
+     *
+     * @return SQL predicate
+     */
+    protected String getUnconfirmedPredicateSql() {
+        return "success=false";
+    }
+
+    /**
+     * Return the SQL reading the page of the relay: at most {@code count} unconfirmed rows with an id greater than
+     * the single parameter, in ascending id order. The columns are id, row identifier, event_type and event_content.
+     * No rows are locked, the relay holds the lease of its cursor instead.
+     *
+     * @param count page size
+     * @return page SQL
+     */
+    protected String getRelayPageSql(int count) {
+        return "select id," + getRowIdentifierColumn() + ",event_type,event_content from " + tableName
+                + " where id>? and " + getUnconfirmedPredicateSql() + " order by id asc limit " + count;
+    }
+
+    /**
+     * Return the SQL creating the cursor table of {@link OutboxRelay}, one row per relayed table holding the
+     * watermark and the lease of the relay.
+     *
+     * @param cursorTableName name of the cursor table
+     * @return table creation SQL statements
+     */
+    @SuppressWarnings("java:S1192")
+    protected String[] getCreateRelayCursorTableSql(String cursorTableName) {
+        return new String[]{"CREATE TABLE IF NOT EXISTS " + cursorTableName + " (\n" +
+                "  relay_name varchar(128) NOT NULL,\n" +
+                "  watermark bigint NOT NULL DEFAULT 0,\n" +
+                "  claimed_by varchar(128),\n" +
+                "  lease_until timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,\n" +
+                "  PRIMARY KEY (relay_name)\n" +
+                ")"};
+    }
+
+    /**
+     * Read the unconfirmed events with an id greater than {@code cursor}, in ascending id order.
+     * Events which can not be converted are skipped (the retrier parks them), but still advance the page.
+     *
+     * @param cursor id of the last relayed event
+     * @param count  page size
+     * @return the page
+     * @throws SQLException if the page can not be read
+     */
+    RelayPage retrieveEventsAfter(long cursor, int count) throws SQLException {
+        List<UnconfirmedRow> rows = new ArrayList<>(count);
+        long lastId = cursor;
+        try (
+                Connection conn = dataSource.getConnection();
+                PreparedStatement statement = conn.prepareStatement(getRelayPageSql(count))
+        ) {
+            statement.setLong(1, cursor);
+            statement.setFetchSize(count);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next() && rows.size() < count) {
+                    lastId = Math.max(lastId, rs.getLong(1));
+                    rows.add(new UnconfirmedRow(rs.getString(2), rs.getString(3), rs.getString(4), 0));
                 }
-            } catch (SQLException e) {
-                log.error("Failed to restore autoCommit on connection", e);
             }
         }
+        return new RelayPage(toEvents(rows), rows.size(), lastId);
+    }
 
-        return Collections.emptyList();
+    /**
+     * Postpone the next attempt of the unconfirmed events in {@code (after, upTo]} to {@code leaseDuration} seconds
+     * from now, before {@link OutboxRelay} publishes them, so that the retrier does not re-send them at once when the
+     * relay lagged behind their initial lease.
+     *
+     * @param after exclusive lower bound
+     * @param upTo  inclusive upper bound
+     * @throws SQLException if the update fails
+     */
+    void postponeRetries(long after, long upTo) throws SQLException {
+        String leaseUntil = getTimestampAfterSql(String.valueOf(leaseDuration));
+        try (
+                Connection conn = dataSource.getConnection();
+                PreparedStatement statement = conn.prepareStatement("update " + tableName + " set next_attempt_at=" + leaseUntil
+                        + " where id>? and id<=? and " + getUnconfirmedPredicateSql() + " and next_attempt_at<" + leaseUntil)
+        ) {
+            conn.setAutoCommit(true);
+            statement.setLong(1, after);
+            statement.setLong(2, upTo);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Return the lowest id of the unconfirmed events in {@code (after, upTo]}, or -1 if all of them are confirmed.
+     *
+     * @param after exclusive lower bound
+     * @param upTo  inclusive upper bound
+     * @return lowest unconfirmed id, or -1
+     * @throws SQLException if the query fails
+     */
+    long lowestUnconfirmedId(long after, long upTo) throws SQLException {
+        try (
+                Connection conn = dataSource.getConnection();
+                PreparedStatement statement = conn.prepareStatement("select min(id) from " + tableName
+                        + " where id>? and id<=? and " + getUnconfirmedPredicateSql())
+        ) {
+            statement.setLong(1, after);
+            statement.setLong(2, upTo);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    long id = rs.getLong(1);
+                    return rs.wasNull() ? -1 : id;
+                }
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * A page read by {@link #retrieveEventsAfter(long, int)}.
+     */
+    static final class RelayPage {
+        private final List<Event<?>> events;
+        private final int rowCount;
+        private final long lastId;
+
+        private RelayPage(List<Event<?>> events, int rowCount, long lastId) {
+            this.events = events;
+            this.rowCount = rowCount;
+            this.lastId = lastId;
+        }
+
+        List<Event<?>> getEvents() {
+            return events;
+        }
+
+        /**
+         * @return number of rows read, including the ones which could not be converted
+         */
+        int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @return the highest id read, or the cursor if the page is empty
+         */
+        long getLastId() {
+            return lastId;
+        }
+    }
+
+    private static final class UnconfirmedRow {
+        private final String id;
+        private final String type;
+        private final String content;
+        private final int retriedCount;
+        /**
+         * Why the row could not be converted to an event, set after the claim.
+         */
+        private String error;
+
+        private UnconfirmedRow(String id, String type, String content, int retriedCount) {
+            this.id = id;
+            this.type = type;
+            this.content = content;
+            this.retriedCount = retriedCount;
+        }
+    }
+
+    /**
+     * Whether this dialect supports the partitioned layout, see {@link #getCreatePartitionedTableSql()}.
+     *
+     * @return {@code false} by default
+     */
+    protected boolean supportsPartitioning() {
+        return false;
+    }
+
+    /**
+     * Return the SQL creating the table range-partitioned by {@code create_time}.
+     * Only called if {@link #supportsPartitioning()}.
+     *
+     * @return table creation SQL statements
+     */
+    protected String[] getCreatePartitionedTableSql() {
+        return getCreateTableSql();
+    }
+
+    /**
+     * List the time partitions of the table, catch-all partitions excluded.
+     *
+     * @param conn connection to query with
+     * @return exclusive upper bound of {@code create_time} by partition name
+     * @throws SQLException if the partitions can not be listed
+     */
+    protected Map<String, LocalDateTime> listPartitions(Connection conn) throws SQLException {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @param from first day of the partition
+     * @return name of the partition starting on {@code from}
+     */
+    protected String getPartitionName(LocalDate from) {
+        return tableName + "_p" + from.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    /**
+     * Return the SQL creating a partition for the rows created in [{@code from}, {@code to}).
+     * The new partition never overlaps an existing one.
+     *
+     * @param name partition name
+     * @param from inclusive lower bound
+     * @param to   exclusive upper bound
+     * @return partition creation SQL
+     */
+    protected String getCreatePartitionSql(String name, LocalDateTime from, LocalDateTime to) {
+        throw new UnsupportedOperationException("Partitioned table is not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * @param name partition name
+     * @return SQL returning a row if the partition holds an unconfirmed event
+     */
+    protected String getPartitionUnconfirmedSql(String name) {
+        throw new UnsupportedOperationException("Partitioned table is not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * @param name partition name
+     * @return SQL dropping the partition and its rows
+     */
+    protected String getDropPartitionSql(String name) {
+        throw new UnsupportedOperationException("Partitioned table is not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Create the next {@code partitionsAhead} partitions, and drop the partitions which ended more than {@code retention}
+     * seconds ago and hold no unconfirmed event, so that retention costs one DDL statement instead of row deletes.
+     *
+     * @param retention retention of confirmed events, in seconds. 0 means partitions are never dropped
+     * @return {@code true} if the table is partitioned
+     */
+    @Override
+    public boolean maintainPartitions(int retention) {
+        if (!partitioned) {
+            return false;
+        }
+        log.trace("maintainPartitions() entry — retention={}", retention);
+        try (
+                Connection conn = dataSource.getConnection();
+                Statement statement = conn.createStatement()
+        ) {
+            conn.setAutoCommit(true);
+            Map<String, LocalDateTime> partitions = listPartitions(conn);
+            createPartitionsAhead(statement, partitions);
+            if (retention > 0) {
+                dropExpiredPartitions(statement, partitions, LocalDateTime.now().minusSeconds(retention));
+            }
+        } catch (SQLException e) {
+            log.error("Failed to maintain partitions of table '{}': {}", tableName, e.getMessage(), e);
+        }
+        return true;
+    }
+
+    private void createPartitionsAhead(Statement statement, Map<String, LocalDateTime> partitions) throws SQLException {
+        LocalDateTime maxUpper = partitions.values().stream().max(Comparator.naturalOrder()).orElse(LocalDateTime.MIN);
+        long today = LocalDate.now().toEpochDay();
+        LocalDate first = LocalDate.ofEpochDay(today - Math.floorMod(today, partitionInterval));
+        for (int i = 0; i < partitionsAhead; i++) {
+            LocalDate from = first.plusDays((long) i * partitionInterval);
+            LocalDateTime to = from.plusDays(partitionInterval).atStartOfDay();
+            if (!to.isAfter(maxUpper)) {
+                continue;
+            }
+            LocalDateTime start = from.atStartOfDay().isBefore(maxUpper) ? maxUpper : from.atStartOfDay();
+            String sql = getCreatePartitionSql(getPartitionName(from), start, to);
+            statement.execute(sql);
+            maxUpper = to;
+            log.info("Partition created: {}", sql);
+        }
+    }
+
+    private void dropExpiredPartitions(Statement statement, Map<String, LocalDateTime> partitions, LocalDateTime expiredBefore) throws SQLException {
+        for (Map.Entry<String, LocalDateTime> partition : partitions.entrySet()) {
+            if (partition.getValue().isAfter(expiredBefore)) {
+                continue;
+            }
+            boolean hasUnconfirmed;
+            try (ResultSet rs = statement.executeQuery(getPartitionUnconfirmedSql(partition.getKey()))) {
+                hasUnconfirmed = rs.next();
+            }
+            if (hasUnconfirmed) {
+                log.warn("Partition '{}' of table '{}' is expired but still holds unconfirmed events, it is kept.", partition.getKey(), tableName);
+            } else {
+                statement.execute(getDropPartitionSql(partition.getKey()));
+                log.info("Expired partition '{}' of table '{}' dropped.", partition.getKey(), tableName);
+            }
+        }
+    }
+
+    /**
+     * Delete one chunk of confirmed events. The chunk is deleted in its own short transaction on a dedicated connection,
+     * so that locks are released as soon as the statement completes.
+     *
+     * @param retention retention of confirmed events, in seconds
+     * @param limit     maximum number of events deleted by this call
+     * @return number of deleted events
+     */
+    @Override
+    public int purgeConfirmedEvents(int retention, int limit) {
+        String sql = getPurgeSql(retention, limit);
+        log.trace("purgeConfirmedEvents() entry — sql={}", sql);
+        try (
+                Connection conn = dataSource.getConnection();
+                Statement statement = conn.createStatement()
+        ) {
+            conn.setAutoCommit(true);
+            statement.setQueryTimeout(this.retrieveTransactionTimeout);
+            int deleted = statement.executeUpdate(sql);
+            log.debug("Purged {} confirmed event(s) from table '{}'", deleted, tableName);
+            return deleted;
+        } catch (SQLException e) {
+            log.error("Failed to purge confirmed events from table '{}': {}", tableName, e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Whether the exception is caused by lock contention or a timeout rather than by a broken statement or connection.
+     * SQL state class 40 is transaction rollback (deadlock, serialization failure), 55P03 is PostgreSQL lock_not_available,
+     * ORA-00054 is Oracle's NOWAIT failure.
+     */
+    private static boolean isLockContention(SQLException e) {
+        if (e instanceof SQLTransientException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        return (Objects.nonNull(state) && (state.startsWith("40") || "55P03".equals(state))) || e.getErrorCode() == 54;
     }
 
     public void createTable() {
@@ -220,11 +1129,82 @@ public abstract class AbstractRdbmsEventPersistenter implements EventPersistente
             for (String sql : createTableSql) {
                 executeSingleCreateTableSql(statement, sql);
             }
+            for (String sql : getAddColumnsSql()) {
+                executeSingleCreateTableSql(statement, sql);
+            }
+            for (String sql : getCreateIndexSql()) {
+                executeSingleCreateTableSql(statement, sql);
+            }
+            if (maxRetryCount > 0) {
+                log.info("Events which can not be converted after {} retries are moved to dead-letter table '{}'", maxRetryCount, deadLetterTableName);
+                for (String sql : getCreateDeadLetterTableSql(deadLetterTableName)) {
+                    executeSingleCreateTableSql(statement, sql);
+                }
+            }
+            checkRetryIndexes(conn);
         } catch (Exception e) {
             log.error("Failed to obtain connection for table creation: tableName={}", this.tableName, e);
         }
     }
 
+    /**
+     * Name of the index backing {@link #getOrderedBaseRetrieveSql(int)}.
+     *
+     * @return index name
+     */
+    protected String getRetryIndexName() {
+        return "idx_" + tableName + "_retry";
+    }
+
+    /**
+     * Return the SQL creating the index which matches the filter and the order of {@link #getOrderedBaseRetrieveSql(int)},
+     * so that polling reads only the unsent rows instead of scanning and sorting the whole table.
+     * Executed at startup after {@link #getCreateTableSql()}, failures (e.g. the index already exists) are skipped.
+     *
+     * @return index creation SQL statements
+     */
+    protected String[] getCreateIndexSql() {
+        return new String[]{
+                "create index " + getRetryIndexName() + " on " + tableName + " (success, retried_count, id desc)",
+                "create index " + getDueIndexName() + " on " + tableName + " (success, next_attempt_at)"
+        };
+    }
+
+    /**
+     * Warn about the missing retry indexes: polling filters on {@code next_attempt_at} (the {@code _due} index) and
+     * orders by {@code retried_count} (the {@code _retry} index).
+     */
+    private void checkRetryIndexes(Connection conn) {
+        for (String indexName : new String[]{getDueIndexName(), getRetryIndexName()}) {
+            try {
+                if (indexExists(conn, indexName)) {
+                    log.info("Retry index '{}' is present on table '{}'", indexName, tableName);
+                } else {
+                    log.warn("Retry index '{}' is missing on table '{}', every retry poll will scan the whole table. Please create it manually: {}",
+                            indexName, tableName, String.join("; ", getCreateIndexSql()));
+                }
+            } catch (SQLException e) {
+                log.warn("Failed to check retry index '{}' on table '{}': {}", indexName, tableName, e.getMessage());
+            }
+        }
+    }
+
+    private boolean indexExists(Connection conn, String indexName) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        // identifiers are stored upper case by some databases (Oracle, H2) and lower case by others (PostgreSQL).
+        Set<String> tableNames = new LinkedHashSet<>(Arrays.asList(tableName, tableName.toUpperCase(Locale.ROOT), tableName.toLowerCase(Locale.ROOT)));
+        for (String table : tableNames) {
+            try (ResultSet rs = metaData.getIndexInfo(conn.getCatalog(), conn.getSchema(), table, false, true)) {
+                while (rs.next()) {
+                    if (indexName.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     private void executeSingleCreateTableSql(Statement statement, String sql) {
         try {
             statement.execute(sql);
@@ -235,6 +1215,10 @@ public abstract class AbstractRdbmsEventPersistenter implements EventPersistente
         }
     }
 
+    private static <C extends EventContent> Event<C> createRawEvent(String id, EventType<C> type, String json) {
+        return new Event<>(id, type, null, json.getBytes(StandardCharsets.UTF_8));
+    }
+
     @SuppressWarnings("unchecked")
     private static <C extends EventContent> Event<C> createEvent(String id, EventType<C> type, EventContent content) {
         return new Event<>(id, type, (C) content);
@@ -3,6 +3,7 @@ package org.coderclan.whistle.rdbms;
 import net.jcip.annotations.ThreadSafe;
 import org.coderclan.whistle.EventContentSerializer;
 import org.coderclan.whistle.EventTypeRegistrar;
+import org.coderclan.whistle.WhistleConfigurationProperties;
 
 import javax.sql.DataSource;
 import java.sql.PreparedStatement;
@@ -18,6 +19,10 @@ public class H2EventPersistenter extends AbstractRdbmsEventPersistenter {
         super(dataSource, serializer, eventTypeRegistrar, tableName, retrieveTransactionTimeout);
     }
 
+    public H2EventPersistenter(DataSource dataSource, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, WhistleConfigurationProperties properties) {
+        super(dataSource, serializer, eventTypeRegistrar, properties);
+    }
+
     protected String getConfirmSql() {
         return "update " + tableName + " set success=true where id=?";
     }
@@ -36,15 +41,38 @@ public class H2EventPersistenter extends AbstractRdbmsEventPersistenter {
                 ")"};
     }
 
+    @Override
+    protected String[] getCreateIndexSql() {
+        return new String[]{
+                "create index if not exists " + getRetryIndexName() + " on " + tableName + " (success, retried_count, id desc)",
+                "create index if not exists " + getDueIndexName() + " on " + tableName + " (success, next_attempt_at)"
+        };
+    }
+
+    @Override
+    protected String getTimestampAfterSql(String secondsExpression) {
+        return "dateadd(MILLISECOND, cast((" + secondsExpression + ") * 1000 as bigint), current_timestamp)";
+    }
+
     @Override
     protected String getOrderedBaseRetrieveSql(int count) {
+        return getOrderedRetrieveSql(count, "");
+    }
+
+    @Override
+    protected String getOrderedShardRetrieveSql(int count, int shard, int shardCount) {
+        return getOrderedRetrieveSql(count, "and mod(id, " + shardCount + ")=" + shard + " ");
+    }
+
+    private String getOrderedRetrieveSql(int count, String shardPredicate) {
         return "select id,event_type,event_content,retried_count from " + tableName
-                + " where success=false and update_time<current_timestamp - INTERVAL '10' second "
+                + " where success=false and next_attempt_at<current_timestamp " + shardPredicate + getRetryCeilingPredicate()
                 + "order by retried_count asc, id desc limit " + count;
     }
 
 
-    protected void fillDbId(PreparedStatement statement, String persistentEventId) throws SQLException {
-        statement.setLong(1, Long.parseLong(persistentEventId));
+    @Override
+    protected void fillDbId(PreparedStatement statement, int parameterIndex, String persistentEventId) throws SQLException {
+        statement.setLong(parameterIndex, Long.parseLong(persistentEventId));
     }
 }
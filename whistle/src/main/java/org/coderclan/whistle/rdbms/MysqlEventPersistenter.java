@@ -3,10 +3,20 @@ package org.coderclan.whistle.rdbms;
 import net.jcip.annotations.ThreadSafe;
 import org.coderclan.whistle.EventContentSerializer;
 import org.coderclan.whistle.EventTypeRegistrar;
+import org.coderclan.whistle.WhistleConfigurationProperties;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
 
 
 /**
@@ -14,14 +24,83 @@ import java.sql.SQLException;
  */
 @ThreadSafe
 public class MysqlEventPersistenter extends AbstractRdbmsEventPersistenter {
+    private static final String MAX_PARTITION = "p_max";
+
     public MysqlEventPersistenter(DataSource dataSource, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, String tableName, int retrieveTransactionTimeout) {
         super(dataSource, serializer, eventTypeRegistrar, tableName, retrieveTransactionTimeout);
     }
 
+    public MysqlEventPersistenter(DataSource dataSource, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, WhistleConfigurationProperties properties) {
+        super(dataSource, serializer, eventTypeRegistrar, properties);
+    }
+
     protected String getConfirmSql() {
         return "update " + tableName + " set success=true where id=?";
     }
 
+    @Override
+    protected boolean supportsPartitioning() {
+        return true;
+    }
+
+    /**
+     * Range partitions on create_time with a catch-all partition, new partitions are split from the (empty) catch-all
+     * partition ahead of time. The primary key includes create_time as MySQL requires.
+     */
+    @Override
+    @SuppressWarnings("java:S1192")
+    protected String[] getCreatePartitionedTableSql() {
+        return new String[]{"CREATE TABLE IF NOT EXISTS  " + tableName + " (\n" +
+                "  id int unsigned NOT NULL AUTO_INCREMENT,\n" +
+                "  event_type varchar(128) DEFAULT NULL,\n" +
+                "  retried_count int unsigned NOT NULL DEFAULT '0',\n" +
+                "  event_content varchar(4096) NOT NULL,\n" +
+                "  success boolean NOT NULL default false ,\n" +
+                "  create_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ,\n" +
+                "  update_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP ,\n" +
+                "  PRIMARY KEY (id, create_time)\n" +
+                ") PARTITION BY RANGE (UNIX_TIMESTAMP(create_time)) (PARTITION " + MAX_PARTITION + " VALUES LESS THAN MAXVALUE)"};
+    }
+
+    @Override
+    protected Map<String, LocalDateTime> listPartitions(Connection conn) throws SQLException {
+        Map<String, LocalDateTime> partitions = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement("select partition_name, partition_description from information_schema.partitions " +
+                "where table_schema=database() and table_name=? and partition_name is not null and partition_name<>?")) {
+            ps.setString(1, tableName);
+            ps.setString(2, MAX_PARTITION);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    LocalDateTime upper = Instant.ofEpochSecond(Long.parseLong(rs.getString(2))).atZone(ZoneId.systemDefault()).toLocalDateTime();
+                    partitions.put(rs.getString(1), upper);
+                }
+            }
+        }
+        return partitions;
+    }
+
+    @Override
+    protected String getPartitionName(LocalDate from) {
+        return "p" + from.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    @Override
+    protected String getCreatePartitionSql(String name, LocalDateTime from, LocalDateTime to) {
+        return "alter table " + tableName + " reorganize partition " + MAX_PARTITION + " into (partition " + name
+                + " values less than (" + to.atZone(ZoneId.systemDefault()).toEpochSecond() + "), partition "
+                + MAX_PARTITION + " values less than maxvalue)";
+    }
+
+    @Override
+    protected String getPartitionUnconfirmedSql(String name) {
+        return "select 1 from " + tableName + " partition (" + name + ") where success=false limit 1";
+    }
+
+    @Override
+    protected String getDropPartitionSql(String name) {
+        return "alter table " + tableName + " drop partition " + name;
+    }
+
     @SuppressWarnings("java:S1192")
     protected String[] getCreateTableSql() {
         return new String[]{"CREATE TABLE IF NOT EXISTS  " + tableName + " (\n" +
@@ -36,15 +115,50 @@ public class MysqlEventPersistenter extends AbstractRdbmsEventPersistenter {
                 ")"};
     }
 
+    /**
+     * MySQL does not support LIMIT in an IN subquery, but supports ORDER BY and LIMIT in DELETE.
+     */
+    @Override
+    protected String getPurgeSql(int retention, int count) {
+        return "delete from " + tableName + " where success=true and update_time<now()- INTERVAL " + retention + " second "
+                + "order by id asc limit " + count;
+    }
+
+    @Override
+    protected String getTimestampAfterSql(String secondsExpression) {
+        return "now() + INTERVAL (" + secondsExpression + ") second";
+    }
+
+    /**
+     * MySQL does not support {@code add column if not exists}, the statements fail if the columns already exist.
+     */
+    @Override
+    protected String[] getAddColumnsSql() {
+        return new String[]{
+                "alter table " + tableName + " add column claimed_by varchar(128) DEFAULT NULL",
+                "alter table " + tableName + " add column next_attempt_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP"
+        };
+    }
+
     @Override
     protected String getOrderedBaseRetrieveSql(int count) {
+        return getOrderedRetrieveSql(count, "");
+    }
+
+    @Override
+    protected String getOrderedShardRetrieveSql(int count, int shard, int shardCount) {
+        return getOrderedRetrieveSql(count, "and mod(id, " + shardCount + ")=" + shard + " ");
+    }
+
+    private String getOrderedRetrieveSql(int count, String shardPredicate) {
         return "select id,event_type,event_content,retried_count from " + tableName
-                + " where success=false and update_time<now()- INTERVAL 10 second "
+                + " where success=false and next_attempt_at<now() " + shardPredicate + getRetryCeilingPredicate()
                 + "order by retried_count asc, id desc limit " + count;
     }
 
 
-    protected void fillDbId(PreparedStatement statement, String persistentEventId) throws SQLException {
-        statement.setLong(1, Long.parseLong(persistentEventId));
+    @Override
+    protected void fillDbId(PreparedStatement statement, int parameterIndex, String persistentEventId) throws SQLException {
+        statement.setLong(parameterIndex, Long.parseLong(persistentEventId));
     }
 }
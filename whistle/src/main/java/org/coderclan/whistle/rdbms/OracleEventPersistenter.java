@@ -3,6 +3,7 @@ package org.coderclan.whistle.rdbms;
 import net.jcip.annotations.ThreadSafe;
 import org.coderclan.whistle.EventContentSerializer;
 import org.coderclan.whistle.EventTypeRegistrar;
+import org.coderclan.whistle.WhistleConfigurationProperties;
 
 import javax.sql.DataSource;
 import java.sql.PreparedStatement;
@@ -14,10 +15,19 @@ import java.sql.SQLException;
  */
 @ThreadSafe
 public class OracleEventPersistenter extends AbstractRdbmsEventPersistenter {
+    /**
+     * Size of the widened window, in batches.
+     */
+    private static final int WIDENED_WINDOW = 8;
+
     public OracleEventPersistenter(DataSource dataSource, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, String tableName, int retrieveTransactionTimeout) {
         super(dataSource, serializer, eventTypeRegistrar, tableName, retrieveTransactionTimeout);
     }
 
+    public OracleEventPersistenter(DataSource dataSource, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, WhistleConfigurationProperties properties) {
+        super(dataSource, serializer, eventTypeRegistrar, properties);
+    }
+
     protected String getConfirmSql() {
         return "update " + tableName + " set success=1 where rowid=?";
     }
@@ -50,23 +60,149 @@ public class OracleEventPersistenter extends AbstractRdbmsEventPersistenter {
         };
     }
 
+    @Override
+    protected String getDeleteOnConfirmSql() {
+        return "delete from " + tableName + " where rowid=?";
+    }
+
+    @Override
+    protected String getPurgeSql(int retention, int count) {
+        return "delete from " + tableName + " where rowid in (select rowid from " + tableName
+                + " where success=1 and update_time<(systimestamp - numtodsinterval(" + retention + ", 'SECOND')) "
+                + "and rownum<=" + count + ")";
+    }
+
+    /**
+     * Oracle rejects {@code fetch first n rows only} (and ROWNUM on an ordered inline view) together with FOR UPDATE
+     * (ORA-02014). So the ROWIDs of the batch are pre-selected by a ROWNUM-limited subquery, and the outer query locks
+     * only those rows: the database sorts and locks one window of {@code count} rows instead of the whole backlog.
+     * With SKIP LOCKED, a window entirely locked by other claimers is retried once with a window of
+     * {@link #WIDENED_WINDOW} batches, see {@link #getWidenedOrderedRetrieveSql(int, int, int)}.
+     */
     @Override
     protected String getOrderedBaseRetrieveSql(int count) {
+        return getOrderedRetrieveSql(count, "");
+    }
+
+    @Override
+    protected String getOrderedShardRetrieveSql(int count, int shard, int shardCount) {
+        return getOrderedRetrieveSql(count, shardPredicate(shard, shardCount));
+    }
+
+    @Override
+    protected String getWidenedOrderedRetrieveSql(int count, int shard, int shardCount) {
+        return getOrderedRetrieveSql(count * WIDENED_WINDOW, shardCount > 1 ? shardPredicate(shard, shardCount) : "");
+    }
+
+    private static String shardPredicate(int shard, int shardCount) {
+        return "and mod(id, " + shardCount + ")=" + shard + " ";
+    }
+
+    private String getOrderedRetrieveSql(int window, String shardPredicate) {
         return "select rowid,event_type,event_content,retried_count from " + tableName
-                + " where success=0 and update_time<(systimestamp - INTERVAL '10' second ) "
-                + "order by retried_count asc, id desc"
+                + " where rowid in (select rid from (select rowid rid from " + tableName
+                + " where success=0 and next_attempt_at<systimestamp " + shardPredicate + getRetryCeilingPredicate()
+                + "order by retried_count asc, id desc) where rownum<=" + window + ") "
+                + "order by retried_count asc, id desc";
+    }
 
-                // select rowid,event_type,event_content,retried_count from sys_persistent_event where success=0 and update_time<(systimestamp - INTERVAL '10' second ) order by retried_count asc, id desc fetch first 32 rows only for update skip locked
-                // ORA-02014: 不能从具有 DISTINCT, GROUP BY 等的视图选择 FOR UPDATE
-                // the following line can NOT be used.
-                //
-                //   + " fetch first " + count + " rows only"
+    @Override
+    protected String getUnconfirmedPredicateSql() {
+        return "success=0";
+    }
 
-                ;
+    @Override
+    protected String getRelayPageSql(int count) {
+        return "select id,rid,event_type,event_content from (select id,rowid rid,event_type,event_content from " + tableName
+                + " where id>? and success=0 order by id asc) where rownum<=" + count;
     }
 
+    @Override
+    @SuppressWarnings("java:S1192")
+    protected String[] getCreateRelayCursorTableSql(String cursorTableName) {
+        return new String[]{
+                "CREATE TABLE " + cursorTableName + "\n" +
+                        "(\n" +
+                        "  RELAY_NAME VARCHAR2(128 BYTE) NOT NULL \n" +
+                        ", WATERMARK NUMBER(*, 0) DEFAULT 0 NOT NULL \n" +
+                        ", CLAIMED_BY VARCHAR2(128 BYTE) \n" +
+                        ", LEASE_UNTIL TIMESTAMP(6) DEFAULT current_timestamp NOT NULL \n" +
+                        ",  PRIMARY KEY (\n" +
+                        "    RELAY_NAME \n" +
+                        "  )\n" +
+                        ")\n"
+        };
+    }
 
-    protected void fillDbId(PreparedStatement statement, String persistentEventId) throws SQLException {
-        statement.setString(1, persistentEventId);
+    @Override
+    @SuppressWarnings("java:S1192")
+    protected String[] getCreateLeaseTableSql(String leaseTableName) {
+        return new String[]{
+                "CREATE TABLE " + leaseTableName + "\n" +
+                        "(\n" +
+                        "  LEASE_NAME VARCHAR2(255 BYTE) NOT NULL \n" +
+                        ", CLAIMED_BY VARCHAR2(128 BYTE) \n" +
+                        ", LEASE_UNTIL TIMESTAMP(6) DEFAULT current_timestamp NOT NULL \n" +
+                        ",  PRIMARY KEY (\n" +
+                        "    LEASE_NAME \n" +
+                        "  )\n" +
+                        ")\n"
+        };
+    }
+
+    @Override
+    protected String getTimestampAfterSql(String secondsExpression) {
+        return "systimestamp + numtodsinterval(" + secondsExpression + ", 'SECOND')";
+    }
+
+    @Override
+    protected String getRandomSql() {
+        return "dbms_random.value";
+    }
+
+    @Override
+    protected String[] getAddColumnsSql() {
+        return new String[]{
+                "ALTER TABLE " + tableName + " ADD (CLAIMED_BY VARCHAR2(128 BYTE))",
+                "ALTER TABLE " + tableName + " ADD (NEXT_ATTEMPT_AT TIMESTAMP(6) DEFAULT current_timestamp NOT NULL)"
+        };
+    }
+
+    @Override
+    protected String getRowIdentifierColumn() {
+        return "rowid";
+    }
+
+    /**
+     * Oracle JDBC driver does not return the generated ROWIDs of a batch insert.
+     */
+    @Override
+    protected boolean supportsBatchGeneratedKeys() {
+        return false;
+    }
+
+    @Override
+    protected void fillDbId(PreparedStatement statement, int parameterIndex, String persistentEventId) throws SQLException {
+        statement.setString(parameterIndex, persistentEventId);
+    }
+
+    @Override
+    @SuppressWarnings("java:S1192")
+    protected String[] getCreateDeadLetterTableSql(String deadLetterTableName) {
+        return new String[]{
+                "CREATE TABLE " + deadLetterTableName + "\n" +
+                        "(\n" +
+                        "  ID NUMBER(*, 0) NOT NULL \n" +
+                        ", EVENT_TYPE VARCHAR2(128 BYTE) \n" +
+                        ", EVENT_CONTENT VARCHAR2(2000 BYTE) NOT NULL \n" +
+                        ", RETRIED_COUNT NUMBER(*, 0) NOT NULL \n" +
+                        ", CREATE_TIME TIMESTAMP(6) NOT NULL \n" +
+                        ", DEAD_TIME TIMESTAMP(6) DEFAULT current_timestamp NOT NULL \n" +
+                        ", LAST_ERROR VARCHAR2(1024 BYTE)\n" +
+                        ",  PRIMARY KEY (\n" +
+                        "    ID \n" +
+                        "  )\n" +
+                        ")\n"
+        };
     }
 }
@@ -0,0 +1,213 @@
+package org.coderclan.whistle.rdbms;
+
+import org.coderclan.whistle.Event;
+import org.coderclan.whistle.EventSender;
+import org.coderclan.whistle.WhistleConfigurationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publish the events straight from the persistent table, in ascending id order, when the delivery mode is
+ * {@link org.coderclan.whistle.DeliveryMode#RELAY}.
+ * <p>
+ * The relay tails the table past a cursor in pages of {@code relayPageSize} rows. The cursor is persisted in the
+ * cursor table as a watermark: every event with an id up to the watermark is confirmed. The watermark only advances
+ * as the events are confirmed, so a relay taking over (e.g. after a crash) resumes from the first unconfirmed event.
+ * Only the node holding the lease of the cursor row relays, the other nodes stand by.
+ * <p>
+ * Events which are not confirmed, and events committed after the relay passed their id, are re-delivered by
+ * {@link org.coderclan.whistle.FailedEventRetrier} once their lease expires. The retrier only claims the events up to
+ * the highest id published by the relay of this node, and nothing on the nodes which stand by, so that it never sends
+ * an event the relay has not reached yet. The relay postpones the next attempt of every page it publishes, so that
+ * the retrier does not re-send at once the events it reached after their initial lease expired.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+public class OutboxRelay implements ApplicationListener<ApplicationStartedEvent>, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final AbstractRdbmsEventPersistenter persistenter;
+    private final EventSender eventSender;
+    private final WhistleConfigurationProperties properties;
+    private final String cursorTableName;
+    private final String relayName;
+    private final String nodeId;
+    private final int pageSize;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * The highest id published by this relay, -1 if this relay does not hold the lease.
+     * Only written by the scheduler thread, read by the retrier as its retry ceiling.
+     */
+    private volatile long published = -1;
+    /**
+     * The persisted watermark, only accessed by the scheduler thread.
+     */
+    private long watermark = -1;
+
+    public OutboxRelay(AbstractRdbmsEventPersistenter persistenter, EventSender eventSender, WhistleConfigurationProperties properties) {
+        this.persistenter = persistenter;
+        this.eventSender = eventSender;
+        this.properties = properties;
+        this.relayName = properties.getPersistentTableName();
+        this.cursorTableName = Objects.isNull(properties.getRelayCursorTableName()) ? relayName + "_relay" : properties.getRelayCursorTableName();
+        this.nodeId = properties.getNodeId();
+        this.pageSize = Math.max(1, properties.getRelayPageSize());
+        persistenter.setRetryCeiling(() -> published);
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationStartedEvent event) {
+        createCursor();
+        if (!properties.isRelayWorker()) {
+            log.info("This node does not relay the events of table '{}', relayWorker is false.", relayName);
+            return;
+        }
+        log.info("Relaying the events of table '{}' every {}ms, {} event(s) per page, cursor table '{}'.",
+                relayName, properties.getRelayInterval(), pageSize, cursorTableName);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "whistle-outbox-relay");
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::relay, 0, Math.max(1, properties.getRelayInterval()), TimeUnit.MILLISECONDS);
+    }
+
+    private void createCursor() {
+        try (
+                Connection conn = persistenter.dataSource.getConnection();
+                Statement statement = conn.createStatement()
+        ) {
+            for (String sql : persistenter.getCreateRelayCursorTableSql(cursorTableName)) {
+                try {
+                    statement.execute(sql);
+                } catch (SQLException e) {
+                    log.debug("Cursor table creation SQL skipped (may already exist): {}", sql, e);
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement("insert into " + cursorTableName + " (relay_name) values (?)")) {
+                ps.setString(1, relayName);
+                ps.executeUpdate();
+                log.info("Relay cursor of table '{}' created.", relayName);
+            } catch (SQLException e) {
+                log.debug("Relay cursor of table '{}' already exists.", relayName, e);
+            }
+        } catch (SQLException e) {
+            log.error("Failed to create the relay cursor: cursorTableName={}", cursorTableName, e);
+        }
+    }
+
+    void relay() {
+        try {
+            if (!renewLease()) {
+                if (published >= 0) {
+                    log.info("Relay lease of table '{}' lost, standing by.", relayName);
+                }
+                published = -1;
+                return;
+            }
+            if (published < 0) {
+                watermark = readWatermark();
+                published = watermark;
+                log.info("Relay lease of table '{}' acquired, resuming after id {}.", relayName, watermark);
+            }
+
+            AbstractRdbmsEventPersistenter.RelayPage page;
+            do {
+                page = persistenter.retrieveEventsAfter(published, pageSize);
+                if (page.getLastId() > published) {
+                    persistenter.postponeRetries(published, page.getLastId());
+                }
+                for (Event<?> e : page.getEvents()) {
+                    eventSender.send(e);
+                }
+                published = page.getLastId();
+            } while (page.getRowCount() >= pageSize && renewLease());
+
+            advanceWatermark();
+        } catch (Exception e) {
+            log.error("Exception countered when relaying the events of table '{}'.", relayName, e);
+        }
+    }
+
+    /**
+     * Acquire or renew the lease of the cursor row, it is only taken over once it expired.
+     */
+    private boolean renewLease() throws SQLException {
+        try (
+                Connection conn = persistenter.dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement("update " + cursorTableName + " set claimed_by=?, lease_until="
+                        + persistenter.getTimestampAfterSql(String.valueOf(Math.max(1, properties.getLeaseDuration())))
+                        + " where relay_name=? and (claimed_by=? or claimed_by is null or lease_until<current_timestamp)")
+        ) {
+            conn.setAutoCommit(true);
+            ps.setString(1, nodeId);
+            ps.setString(2, relayName);
+            ps.setString(3, nodeId);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    private long readWatermark() throws SQLException {
+        try (
+                Connection conn = persistenter.dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement("select watermark from " + cursorTableName + " where relay_name=?")
+        ) {
+            ps.setString(1, relayName);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Move the watermark to just before the lowest unconfirmed published event, or to the last published event if
+     * they are all confirmed. The update is fenced by the lease holder.
+     */
+    private void advanceWatermark() throws SQLException {
+        if (published <= watermark) {
+            return;
+        }
+        long lowest = persistenter.lowestUnconfirmedId(watermark, published);
+        long next = lowest < 0 ? published : lowest - 1;
+        if (next <= watermark) {
+            return;
+        }
+        try (
+                Connection conn = persistenter.dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement("update " + cursorTableName + " set watermark=? where relay_name=? and claimed_by=?")
+        ) {
+            conn.setAutoCommit(true);
+            ps.setLong(1, next);
+            ps.setString(2, relayName);
+            ps.setString(3, nodeId);
+            if (ps.executeUpdate() > 0) {
+                log.trace("Relay watermark of table '{}' advanced to {}", relayName, next);
+                watermark = next;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            log.info("OutboxRelay scheduler shut down.");
+        }
+    }
+}
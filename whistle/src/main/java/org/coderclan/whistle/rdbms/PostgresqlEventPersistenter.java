@@ -3,10 +3,21 @@ package org.coderclan.whistle.rdbms;
 import net.jcip.annotations.ThreadSafe;
 import org.coderclan.whistle.EventContentSerializer;
 import org.coderclan.whistle.EventTypeRegistrar;
+import org.coderclan.whistle.WhistleConfigurationProperties;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 /**
@@ -14,10 +25,23 @@ import java.sql.SQLException;
  */
 @ThreadSafe
 public class PostgresqlEventPersistenter extends AbstractRdbmsEventPersistenter {
+    private static final String UPDATE_TIME_FUNCTION_SQL = "create or replace function sys_fun_update_time() returns trigger AS $$\n" +
+            "begin\n" +
+            "    new.update_time = current_timestamp;\n" +
+            "    return new;\n" +
+            "END;\n" +
+            "$$ language plpgsql;";
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter PARTITION_BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     public PostgresqlEventPersistenter(DataSource dataSource, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, String tableName, int retrieveTransactionTimeout) {
         super(dataSource, serializer, eventTypeRegistrar, tableName, retrieveTransactionTimeout);
     }
 
+    public PostgresqlEventPersistenter(DataSource dataSource, EventContentSerializer serializer, EventTypeRegistrar eventTypeRegistrar, WhistleConfigurationProperties properties) {
+        super(dataSource, serializer, eventTypeRegistrar, properties);
+    }
+
     protected String getConfirmSql() {
         return "update " + tableName + " set success=true where id=?";
     }
@@ -33,25 +57,138 @@ public class PostgresqlEventPersistenter extends AbstractRdbmsEventPersistenter
                 "  create_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ,\n" +
                 "  update_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP  \n" +
                 ")",
-                "create or replace function sys_fun_update_time() returns trigger AS $$\n" +
-                        "begin\n" +
-                        "    new.update_time = current_timestamp;\n" +
-                        "    return new;\n" +
-                        "END;\n" +
-                        "$$ language plpgsql;",
-                "CREATE TRIGGER trigger_" + tableName + " before update on " + tableName + " for each row execute procedure sys_fun_update_time();"
+                UPDATE_TIME_FUNCTION_SQL,
+                getCreateTriggerSql()
+        };
+    }
+
+    @Override
+    protected boolean supportsPartitioning() {
+        return true;
+    }
+
+    /**
+     * Declarative range partitions on create_time, with a default partition catching the rows outside all partitions.
+     */
+    @Override
+    @SuppressWarnings("java:S1192")
+    protected String[] getCreatePartitionedTableSql() {
+        return new String[]{"CREATE TABLE IF NOT EXISTS  " + tableName + " (\n" +
+                "  id bigserial,\n" +
+                "  event_type varchar(128) DEFAULT NULL,\n" +
+                "  retried_count int NOT NULL DEFAULT '0',\n" +
+                "  event_content varchar(4096) NOT NULL,\n" +
+                "  success boolean NOT NULL default false ,\n" +
+                "  create_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ,\n" +
+                "  update_time timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ,\n" +
+                "  PRIMARY KEY (id, create_time)\n" +
+                ") PARTITION BY RANGE (create_time)",
+                "CREATE TABLE IF NOT EXISTS " + tableName + "_default PARTITION OF " + tableName + " DEFAULT",
+                UPDATE_TIME_FUNCTION_SQL,
+                getCreateTriggerSql()
+        };
+    }
+
+    private String getCreateTriggerSql() {
+        return "CREATE TRIGGER trigger_" + tableName + " before update on " + tableName + " for each row execute procedure sys_fun_update_time();";
+    }
+
+    @Override
+    protected Map<String, LocalDateTime> listPartitions(Connection conn) throws SQLException {
+        Map<String, LocalDateTime> partitions = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement("select c.relname, pg_get_expr(c.relpartbound, c.oid) from pg_inherits i " +
+                "join pg_class c on c.oid=i.inhrelid where i.inhparent=to_regclass(?)")) {
+            ps.setString(1, tableName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // e.g. FOR VALUES FROM ('2024-01-01 00:00:00') TO ('2024-01-02 00:00:00'), the default partition has no bound.
+                    Matcher m = UPPER_BOUND.matcher(rs.getString(2));
+                    if (m.find()) {
+                        partitions.put(rs.getString(1), LocalDateTime.parse(m.group(1), PARTITION_BOUND_FORMAT));
+                    }
+                }
+            }
+        }
+        return partitions;
+    }
+
+    @Override
+    protected String getCreatePartitionSql(String name, LocalDateTime from, LocalDateTime to) {
+        return "create table if not exists " + name + " partition of " + tableName + " for values from ('"
+                + from.format(PARTITION_BOUND_FORMAT) + "') to ('" + to.format(PARTITION_BOUND_FORMAT) + "')";
+    }
+
+    @Override
+    protected String getPartitionUnconfirmedSql(String name) {
+        return "select 1 from " + name + " where success=false limit 1";
+    }
+
+    @Override
+    protected String getDropPartitionSql(String name) {
+        return "drop table if exists " + name;
+    }
+
+    /**
+     * Partial index, so that the index only holds the unsent rows and stays small however large the table grows.
+     */
+    @Override
+    protected String[] getCreateIndexSql() {
+        return new String[]{
+                "create index if not exists " + getRetryIndexName() + " on " + tableName + " (retried_count, id desc) where success = false",
+                "create index if not exists " + getDueIndexName() + " on " + tableName + " (next_attempt_at) where success = false"
         };
     }
 
     @Override
     protected String getOrderedBaseRetrieveSql(int count) {
+        return getOrderedRetrieveSql(count, "");
+    }
+
+    @Override
+    protected String getOrderedShardRetrieveSql(int count, int shard, int shardCount) {
+        return getOrderedRetrieveSql(count, "and mod(id, " + shardCount + ")=" + shard + " ");
+    }
+
+    private String getOrderedRetrieveSql(int count, String shardPredicate) {
         return "select id,event_type,event_content,retried_count from " + tableName
-                + " where success=false and update_time<current_timestamp - INTERVAL '10' second "
+                + " where success=false and next_attempt_at<current_timestamp " + shardPredicate + getRetryCeilingPredicate()
                 + "order by retried_count asc, id desc limit " + count;
     }
 
 
-    protected void fillDbId(PreparedStatement statement, String persistentEventId) throws SQLException {
-        statement.setLong(1, Long.parseLong(persistentEventId));
+    /**
+     * @return name of the channel notified when events are released for re-delivery
+     */
+    public String getRetryChannel() {
+        return "whistle_retry_" + tableName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Wake up the retriers listening on {@link #getRetryChannel()}.
+     */
+    @Override
+    protected void afterRelease(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("NOTIFY " + getRetryChannel());
+        }
+    }
+
+    @Override
+    protected String getRandomSql() {
+        return "random()";
+    }
+
+    /**
+     * Lock, increment, lease and return the batch with one statement.
+     */
+    @Override
+    protected String getClaimSql(String lockingRetrieveSql) {
+        return "with c as (" + lockingRetrieveSql + ") update " + tableName + " t set " + getLeaseSetClause("t.") + ", retried_count=t.retried_count+1 from c "
+                + "where t.id=c.id returning t.id,t.event_type,t.event_content,c.retried_count";
+    }
+
+    @Override
+    protected void fillDbId(PreparedStatement statement, int parameterIndex, String persistentEventId) throws SQLException {
+        statement.setLong(parameterIndex, Long.parseLong(persistentEventId));
     }
 }
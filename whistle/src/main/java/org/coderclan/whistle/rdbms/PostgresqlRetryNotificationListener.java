@@ -0,0 +1,138 @@
+package org.coderclan.whistle.rdbms;
+
+import net.jcip.annotations.ThreadSafe;
+import org.coderclan.whistle.RetryNotificationSource;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+
+/**
+ * LISTEN on the retry channel of a {@link PostgresqlEventPersistenter} with a dedicated connection. The listener is
+ * called on every notification, and at least every {@code maxWait} milliseconds.
+ * <p>
+ * While {@code tracksDueTime} holds (e.g. on the retry leader only), the listener is also called when the earliest
+ * {@code next_attempt_at} of the unsent events is reached, so that lease expiries are noticed without polling. The
+ * earliest due time is queried at most once every {@code minWait} milliseconds, notifications do not query it again.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class PostgresqlRetryNotificationListener implements RetryNotificationSource {
+    private static final Logger log = LoggerFactory.getLogger(PostgresqlRetryNotificationListener.class);
+    private static final int RECONNECT_DELAY = 1000;
+
+    private final DataSource dataSource;
+    private final String channel;
+    private final String nextDueSql;
+    private final int minWait;
+    private final int maxWait;
+
+    private volatile boolean running;
+    private volatile Thread thread;
+
+    /**
+     * @param dataSource   data source of the persistent table
+     * @param persistenter persistenter notifying the channel
+     * @param minWait      minimum time between two queries of the earliest due time, in milliseconds, e.g. the retry delay
+     * @param maxWait      maximum time between two calls of the listener, in milliseconds
+     */
+    public PostgresqlRetryNotificationListener(DataSource dataSource, PostgresqlEventPersistenter persistenter, int minWait, int maxWait) {
+        this.dataSource = dataSource;
+        this.channel = persistenter.getRetryChannel();
+        this.nextDueSql = "select extract(epoch from (min(next_attempt_at) - current_timestamp)) * 1000 from "
+                + persistenter.tableName + " where success=false";
+        this.minWait = Math.max(1, minWait);
+        this.maxWait = Math.max(this.minWait, maxWait);
+    }
+
+    @Override
+    public void start(Runnable listener) {
+        start(listener, () -> true);
+    }
+
+    @Override
+    public synchronized void start(Runnable listener, BooleanSupplier tracksDueTime) {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread t = new Thread(() -> listen(listener, tracksDueTime), "whistle-retry-listener");
+        t.setDaemon(true);
+        t.start();
+        this.thread = t;
+        log.info("Listening on PostgreSQL channel '{}' for events to retry.", channel);
+    }
+
+    private void listen(Runnable listener, BooleanSupplier tracksDueTime) {
+        while (running) {
+            try (
+                    Connection conn = dataSource.getConnection();
+                    Statement statement = conn.createStatement()
+            ) {
+                conn.setAutoCommit(true);
+                statement.execute("LISTEN " + channel);
+                PGConnection pgConnection = conn.unwrap(PGConnection.class);
+                long wakeUpAt = 0;
+                boolean tracking = false;
+                while (running) {
+                    // catch up first: notifications sent while (re)connecting are lost.
+                    listener.run();
+                    long now = System.currentTimeMillis();
+                    boolean tracks = tracksDueTime.getAsBoolean();
+                    if (now >= wakeUpAt || (tracks && !tracking)) {
+                        wakeUpAt = now + (tracks ? millisUntilNextDue(statement) : maxWait);
+                        tracking = tracks;
+                    }
+                    // 0 waits forever.
+                    pgConnection.getNotifications((int) Math.max(1, wakeUpAt - now));
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Retry notification connection failed, reconnecting in {}ms: {}", RECONNECT_DELAY, e.getMessage());
+                    sleep();
+                }
+            } catch (RuntimeException e) {
+                log.error("Exception countered when handling retry notifications.", e);
+                sleep();
+            }
+        }
+    }
+
+    private int millisUntilNextDue(Statement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(nextDueSql)) {
+            if (!rs.next() || Objects.isNull(rs.getObject(1))) {
+                return maxWait;
+            }
+            double millis = rs.getDouble(1);
+            return (int) Math.max(minWait, Math.min(maxWait, millis));
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(RECONNECT_DELAY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        Thread t = this.thread;
+        if (Objects.nonNull(t)) {
+            t.interrupt();
+            this.thread = null;
+            log.info("Retry notification listener on channel '{}' stopped.", channel);
+        }
+    }
+}
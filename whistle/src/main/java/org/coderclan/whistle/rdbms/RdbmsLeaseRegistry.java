@@ -0,0 +1,94 @@
+package org.coderclan.whistle.rdbms;
+
+import net.jcip.annotations.ThreadSafe;
+import org.coderclan.whistle.LeaseRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * {@link LeaseRegistry} backed by a table with one row per lease. A lease is acquired by a conditional update of its
+ * row (inserting the row the first time), so the database arbitrates between the nodes without holding any lock.
+ *
+ * @author aray(dot)chou(dot)cn(at)gmail(dot)com
+ */
+@ThreadSafe
+public class RdbmsLeaseRegistry implements LeaseRegistry {
+    private static final Logger log = LoggerFactory.getLogger(RdbmsLeaseRegistry.class);
+
+    private final AbstractRdbmsEventPersistenter persistenter;
+    private final String leaseTableName;
+
+    public RdbmsLeaseRegistry(AbstractRdbmsEventPersistenter persistenter, String leaseTableName) {
+        this.persistenter = persistenter;
+        this.leaseTableName = leaseTableName;
+        createTable();
+    }
+
+    private void createTable() {
+        log.info("Lease table name: {}", leaseTableName);
+        try (
+                Connection conn = persistenter.dataSource.getConnection();
+                Statement statement = conn.createStatement()
+        ) {
+            for (String sql : persistenter.getCreateLeaseTableSql(leaseTableName)) {
+                try {
+                    statement.execute(sql);
+                } catch (SQLException e) {
+                    log.debug("Lease table creation SQL skipped (may already exist): {}", sql, e);
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Failed to obtain connection for lease table creation: leaseTableName={}", leaseTableName, e);
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(String name, String holder, int duration) {
+        String leaseUntil = persistenter.getTimestampAfterSql(String.valueOf(duration));
+        try (Connection conn = persistenter.dataSource.getConnection()) {
+            conn.setAutoCommit(true);
+            try (PreparedStatement ps = conn.prepareStatement("update " + leaseTableName + " set claimed_by=?, lease_until=" + leaseUntil
+                    + " where lease_name=? and (claimed_by=? or claimed_by is null or lease_until<current_timestamp)")) {
+                ps.setString(1, holder);
+                ps.setString(2, name);
+                ps.setString(3, holder);
+                if (ps.executeUpdate() > 0) {
+                    return true;
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement("insert into " + leaseTableName
+                    + " (lease_name,claimed_by,lease_until) values (?,?," + leaseUntil + ")")) {
+                ps.setString(1, name);
+                ps.setString(2, holder);
+                return ps.executeUpdate() > 0;
+            } catch (SQLException e) {
+                // the lease exists and is held by another holder.
+                log.trace("Lease '{}' is held by another holder.", name);
+                return false;
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to acquire lease '{}': {}", name, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void release(String name, String holder) {
+        try (
+                Connection conn = persistenter.dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement("update " + leaseTableName + " set claimed_by=null where lease_name=? and claimed_by=?")
+        ) {
+            conn.setAutoCommit(true);
+            ps.setString(1, name);
+            ps.setString(2, holder);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            log.warn("Failed to release lease '{}': {}", name, e.getMessage());
+        }
+    }
+}
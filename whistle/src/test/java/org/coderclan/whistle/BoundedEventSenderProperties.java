@@ -0,0 +1,101 @@
+package org.coderclan.whistle;
+
+import net.jqwik.api.*;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+import org.coderclan.whistle.exception.EventQueueFullException;
+import org.reactivestreams.Subscription;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Property 45: Bounded sender never holds more than its capacity
+ *
+ * For any number of events sent while the subscriber requests nothing, the queue holds at most {@code capacity}
+ * events, the others are dropped (persisted events) or rejected (other events, FAIL policy), and the queued events
+ * are all delivered in order once requested.
+ */
+class BoundedEventSenderProperties {
+
+    private static final EventType<EventContent> TYPE = new EventType<EventContent>() {
+        @Override
+        public String getName() {
+            return "test.Event";
+        }
+
+        @Override
+        public Class<EventContent> getContentType() {
+            return EventContent.class;
+        }
+    };
+
+    private static final EventContent CONTENT = new EventContent() {
+    };
+
+    /**
+     * Requests nothing until told to.
+     */
+    private static class IdleSubscriber extends BaseSubscriber<Message<?>> {
+        private final List<String> received = new ArrayList<>();
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            // request nothing, the queue fills up.
+        }
+
+        @Override
+        protected void hookOnNext(Message<?> message) {
+            received.add((String) message.getHeaders().get(Constants.EVENT_PERSISTENT_ID_HEADER));
+        }
+    }
+
+    @Property(tries = 100)
+    @Tag("Feature: whistle-event-system, Property 45: Bounded sender never holds more than its capacity")
+    void queueIsBoundedAndDeliveredInOrder(
+            @ForAll("eventCounts") int eventCount,
+            @ForAll("capacities") int capacity,
+            @ForAll boolean persisted
+    ) {
+        BoundedEventSender sender = new BoundedEventSender(capacity, 0, OverflowPolicy.FAIL, null);
+        IdleSubscriber subscriber = new IdleSubscriber();
+        sender.asFlux().subscribe(subscriber);
+
+        List<String> accepted = new ArrayList<>();
+        int rejected = 0;
+        for (int i = 0; i < eventCount; i++) {
+            String id = persisted ? String.valueOf(i) : null;
+            try {
+                sender.send(new Event<>(id, TYPE, CONTENT));
+                accepted.add(id);
+            } catch (EventQueueFullException e) {
+                rejected++;
+            }
+            assert sender.getQueueDepth() <= capacity :
+                    "Queue depth " + sender.getQueueDepth() + " exceeds capacity=" + capacity;
+        }
+
+        int expectedQueued = Math.min(eventCount, capacity);
+        assert sender.getQueueDepth() == expectedQueued : "Expected " + expectedQueued + " queued events, depth=" + sender.getQueueDepth();
+        assert sender.getDroppedCount() == eventCount - expectedQueued : "Dropped count=" + sender.getDroppedCount();
+        assert rejected == (persisted ? 0 : eventCount - expectedQueued) :
+                "Persisted events must be dropped silently, other events rejected, rejected=" + rejected;
+
+        subscriber.request(Long.MAX_VALUE);
+        assert sender.getQueueDepth() == 0 : "Queue should be empty once requested, depth=" + sender.getQueueDepth();
+        assert subscriber.received.equals(accepted.subList(0, expectedQueued)) :
+                "Expected the queued events in order, expected=" + accepted.subList(0, expectedQueued) + ", received=" + subscriber.received;
+    }
+
+    @Provide
+    Arbitrary<Integer> eventCounts() {
+        return Arbitraries.integers().between(0, 500);
+    }
+
+    @Provide
+    Arbitrary<Integer> capacities() {
+        return Arbitraries.integers().between(1, 100);
+    }
+}
@@ -0,0 +1,78 @@
+package org.coderclan.whistle;
+
+import net.jqwik.api.*;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+
+import java.util.*;
+
+/**
+ * Property 41: Coalesced confirmations are complete and bounded
+ *
+ * For any sequence of ACKs and any batch size, every ACKed event is confirmed exactly once
+ * (after {@link ConfirmCoalescer#destroy()} has flushed the queue), and no
+ * {@link EventPersistenter#confirmEvents(Collection)} call receives more than {@code batchSize} IDs.
+ */
+class ConfirmCoalescerProperties {
+
+    /**
+     * Records every confirmEvents() call; the other operations are not used by the coalescer.
+     */
+    private static class RecordingPersistenter implements EventPersistenter {
+        private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public <C extends EventContent> String persistEvent(EventType<C> type, C content) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void confirmEvent(String persistentEventId) {
+            confirmEvents(Collections.singletonList(persistentEventId));
+        }
+
+        @Override
+        public void confirmEvents(Collection<String> persistentEventIds) {
+            batches.add(new ArrayList<>(persistentEventIds));
+        }
+
+        @Override
+        public List<Event<?>> retrieveUnconfirmedEvent() {
+            return Collections.emptyList();
+        }
+    }
+
+    @Property(tries = 50)
+    @Tag("Feature: whistle-event-system, Property 41: Coalesced confirmations are complete and bounded")
+    void everyAckIsConfirmedOnceInBoundedBatches(
+            @ForAll("ids") List<String> ids,
+            @ForAll("batchSizes") int batchSize
+    ) throws Exception {
+        RecordingPersistenter persistenter = new RecordingPersistenter();
+        ConfirmCoalescer coalescer = new ConfirmCoalescer(persistenter, batchSize, 10);
+        coalescer.afterPropertiesSet();
+
+        ids.forEach(coalescer::confirm);
+        coalescer.destroy();
+
+        List<String> confirmed = new ArrayList<>();
+        for (List<String> batch : persistenter.batches) {
+            assert batch.size() <= batchSize :
+                    "Batch of " + batch.size() + " exceeds batchSize=" + batchSize;
+            confirmed.addAll(batch);
+        }
+        assert confirmed.size() == ids.size() && new HashSet<>(confirmed).equals(new HashSet<>(ids)) :
+                "Expected every ACK to be confirmed exactly once, ACKs=" + ids + ", confirmed=" + confirmed;
+        assert coalescer.getQueueDepth() == 0 : "Queue should be empty, depth=" + coalescer.getQueueDepth();
+    }
+
+    @Provide
+    Arbitrary<List<String>> ids() {
+        return Arbitraries.create(() -> UUID.randomUUID().toString()).list().ofMaxSize(500);
+    }
+
+    @Provide
+    Arbitrary<Integer> batchSizes() {
+        return Arbitraries.integers().between(1, 64);
+    }
+}
@@ -0,0 +1,151 @@
+package org.coderclan.whistle;
+
+import net.jqwik.api.*;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Property 42: Purge deletes every expired confirmed event in bounded chunks
+ *
+ * For any number of expired confirmed events and any batch size, one purge run deletes all of them,
+ * no {@link EventPersistenter#purgeConfirmedEvents(int, int)} call is asked for more than {@code batchSize} events,
+ * and the run stops after the first chunk which is not full.
+ */
+class ConfirmedEventPurgerProperties {
+
+    /**
+     * Holds {@code remaining} expired confirmed events and records the limit of every purge call.
+     */
+    private static class PurgeablePersistenter implements EventPersistenter {
+        private int remaining;
+        private final List<Integer> limits = new ArrayList<>();
+
+        PurgeablePersistenter(int remaining) {
+            this.remaining = remaining;
+        }
+
+        @Override
+        public <C extends EventContent> String persistEvent(EventType<C> type, C content) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void confirmEvent(String persistentEventId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Event<?>> retrieveUnconfirmedEvent() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int purgeConfirmedEvents(int retention, int limit) {
+            limits.add(limit);
+            int deleted = Math.min(remaining, limit);
+            remaining -= deleted;
+            return deleted;
+        }
+    }
+
+    @Property(tries = 100)
+    @Tag("Feature: whistle-event-system, Property 42: Purge deletes every expired confirmed event in bounded chunks")
+    void purgeDeletesAllInBoundedChunks(
+            @ForAll("eventCounts") int eventCount,
+            @ForAll("batchSizes") int batchSize
+    ) {
+        PurgeablePersistenter persistenter = new PurgeablePersistenter(eventCount);
+        WhistleConfigurationProperties properties = new WhistleConfigurationProperties();
+        properties.setConfirmedEventRetention(60);
+        properties.setPurgeBatchSize(batchSize);
+        properties.setPurgeThrottle(0);
+
+        int purged = new ConfirmedEventPurger(persistenter, properties).purge();
+
+        assert purged == eventCount : "Expected " + eventCount + " purged events, actual=" + purged;
+        assert persistenter.remaining == 0 : "Expired events left: " + persistenter.remaining;
+        assert persistenter.limits.stream().allMatch(l -> l == batchSize) :
+                "Every purge call must be limited to batchSize=" + batchSize + ", limits=" + persistenter.limits;
+        assert persistenter.limits.size() == eventCount / batchSize + 1 :
+                "Expected " + (eventCount / batchSize + 1) + " purge calls, actual=" + persistenter.limits.size();
+    }
+
+    @Provide
+    Arbitrary<Integer> eventCounts() {
+        return Arbitraries.integers().between(0, 5000);
+    }
+
+    @Provide
+    Arbitrary<Integer> batchSizes() {
+        return Arbitraries.integers().between(1, 1000);
+    }
+
+    private static final int RETENTION = 3600;
+    private static final int UNCONFIRMED_RECENT = 0;
+    private static final int UNCONFIRMED_OLD = 1;
+    private static final int CONFIRMED_RECENT = 2;
+    private static final int CONFIRMED_OLD = 3;
+
+    /**
+     * Property 48: The RDBMS purge deletes only expired confirmed events, in chunks of at most {@code limit}
+     *
+     * For any mix of confirmed and unconfirmed events, older or newer than the retention, repeated
+     * {@link org.coderclan.whistle.rdbms.H2EventPersistenter#purgeConfirmedEvents(int, int)} calls delete at most
+     * {@code limit} events each, and end up deleting exactly the confirmed events older than the retention.
+     */
+    @Property(tries = 30)
+    @Tag("Feature: whistle-event-system, Property 48: The RDBMS purge deletes only expired confirmed events in bounded chunks")
+    void h2PurgeDeletesOnlyExpiredConfirmedEventsInBoundedChunks(
+            @ForAll("rowStates") List<Integer> rowStates,
+            @ForAll("limits") int limit
+    ) throws SQLException {
+        try (H2Outbox outbox = H2Outbox.open()) {
+            EventPersistenter persistenter = outbox.persistenter(H2Outbox.properties());
+            List<String> kept = new ArrayList<>();
+            int expired = 0;
+            for (int i = 0; i < rowStates.size(); i++) {
+                int state = rowStates.get(i);
+                boolean confirmed = state == CONFIRMED_RECENT || state == CONFIRMED_OLD;
+                int age = state == UNCONFIRMED_OLD || state == CONFIRMED_OLD ? RETENTION + 60 + i : i;
+                outbox.execute("insert into " + H2Outbox.TABLE_NAME + " (event_type, event_content, success, update_time) values ('"
+                        + H2Outbox.TYPE.getName() + "', '{}', " + confirmed + ", dateadd(SECOND, -" + age + ", current_timestamp))");
+                if (state == CONFIRMED_OLD) {
+                    expired++;
+                } else {
+                    kept.add(String.valueOf(i + 1));
+                }
+            }
+
+            int purged = 0;
+            int calls = 0;
+            int deleted;
+            do {
+                deleted = persistenter.purgeConfirmedEvents(RETENTION, limit);
+                assert deleted <= limit : "A purge call deleted " + deleted + " events, more than limit=" + limit;
+                assert calls > 0 || deleted == Math.min(limit, expired) :
+                        "The first chunk should delete min(limit, expired)=" + Math.min(limit, expired) + ", deleted=" + deleted;
+                purged += deleted;
+                calls++;
+            } while (deleted > 0 && calls <= rowStates.size());
+
+            assert purged == expired : "Expected " + expired + " purged events, actual=" + purged;
+            List<String> remaining = outbox.query("select id from " + H2Outbox.TABLE_NAME + " order by id");
+            assert remaining.equals(kept) : "Only the expired confirmed events should be purged, expected remaining=" + kept + ", actual=" + remaining;
+        }
+    }
+
+    @Provide
+    Arbitrary<List<Integer>> rowStates() {
+        return Arbitraries.integers().between(UNCONFIRMED_RECENT, CONFIRMED_OLD).list().ofMaxSize(60);
+    }
+
+    @Provide
+    Arbitrary<Integer> limits() {
+        return Arbitraries.integers().between(1, 20);
+    }
+}
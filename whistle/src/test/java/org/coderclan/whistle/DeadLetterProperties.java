@@ -0,0 +1,71 @@
+package org.coderclan.whistle;
+
+import net.jqwik.api.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Property 51: Only events which can not be converted are parked
+ *
+ * For any retried count and any kind of poison event (unknown event type or undeserializable content), claiming a
+ * poison event and a healthy event with the same retried count moves the poison event to the dead-letter table with
+ * its last error once the retried count reaches {@code maxRetryCount}, while the healthy event stays in the outbox
+ * and is returned.
+ */
+class DeadLetterProperties {
+
+    private static final int MAX_RETRY_COUNT = 3;
+    private static final String DEAD_TABLE_NAME = H2Outbox.TABLE_NAME + "_dead";
+
+    @Property(tries = 30)
+    @Tag("Feature: whistle-event-system, Property 51: Only events which can not be converted are parked")
+    void onlyPoisonEventsAreParked(
+            @ForAll("retriedCounts") int retriedCount,
+            @ForAll boolean unknownType
+    ) throws SQLException {
+        try (H2Outbox outbox = H2Outbox.open()) {
+            WhistleConfigurationProperties properties = H2Outbox.properties();
+            properties.setMaxRetryCount(MAX_RETRY_COUNT);
+            EventPersistenter persistenter = outbox.persistenter(properties);
+
+            String healthy = insert(outbox, H2Outbox.TYPE.getName(), "{\"text\":\"healthy\"}", retriedCount);
+            String poison = unknownType
+                    ? insert(outbox, "test.Gone", "{\"text\":\"gone\"}", retriedCount)
+                    : insert(outbox, H2Outbox.TYPE.getName(), "not json", retriedCount);
+
+            List<String> returned = new ArrayList<>();
+            for (Event<?> event : persistenter.retrieveUnconfirmedEvent(Constants.RETRY_BATCH_COUNT)) {
+                returned.add(event.getPersistentEventId());
+            }
+            assert returned.equals(Collections.singletonList(healthy)) : "Expected only the healthy event to be returned, returned=" + returned;
+
+            List<String> outboxIds = outbox.query("select id from " + H2Outbox.TABLE_NAME + " order by id");
+            List<String> deadErrors = outbox.query("select last_error from " + DEAD_TABLE_NAME + " where id=" + poison);
+            assert outboxIds.contains(healthy) : "The healthy event left the outbox at retriedCount=" + retriedCount;
+            assert outbox.query("select id from " + DEAD_TABLE_NAME + " where id=" + healthy).isEmpty() :
+                    "The healthy event was parked at retriedCount=" + retriedCount;
+            if (retriedCount >= MAX_RETRY_COUNT) {
+                assert !outboxIds.contains(poison) : "The poison event is still in the outbox at retriedCount=" + retriedCount;
+                assert deadErrors.size() == 1 && deadErrors.get(0) != null && !deadErrors.get(0).isEmpty() :
+                        "Expected the poison event to be parked with its last error, errors=" + deadErrors;
+            } else {
+                assert outboxIds.contains(poison) : "The poison event was parked before maxRetryCount, retriedCount=" + retriedCount;
+                assert deadErrors.isEmpty() : "The poison event was parked before maxRetryCount, retriedCount=" + retriedCount;
+            }
+        }
+    }
+
+    private static String insert(H2Outbox outbox, String type, String content, int retriedCount) throws SQLException {
+        outbox.execute("insert into " + H2Outbox.TABLE_NAME + " (event_type, event_content, retried_count, next_attempt_at) values ('"
+                + type + "', '" + content + "', " + retriedCount + ", dateadd(SECOND, -1, current_timestamp))");
+        return outbox.query("select max(id) from " + H2Outbox.TABLE_NAME).get(0);
+    }
+
+    @Provide
+    Arbitrary<Integer> retriedCounts() {
+        return Arbitraries.integers().between(0, 2 * MAX_RETRY_COUNT);
+    }
+}
@@ -0,0 +1,77 @@
+package org.coderclan.whistle;
+
+import net.jqwik.api.*;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Property 46: Template messages carry the destination and persistent id only
+ *
+ * For any event, the message built from the descriptor of its type is routed to the type name, carries the
+ * persistent id of the event (if any), the JSON content type only for pre-serialized payloads, and no id or timestamp.
+ * Messages of the same type share their descriptor, and do not see each other's persistent ids.
+ */
+class EventTypeDescriptorProperties {
+
+    private static final EventContent CONTENT = new EventContent() {
+    };
+
+    private static EventType<EventContent> type(String name) {
+        return new EventType<EventContent>() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Class<EventContent> getContentType() {
+                return EventContent.class;
+            }
+        };
+    }
+
+    @Property(tries = 100)
+    @Tag("Feature: whistle-event-system, Property 46: Template messages carry the destination and persistent id only")
+    void templateMessagesCarryDestinationAndPersistentId(
+            @ForAll("names") String name,
+            @ForAll boolean registered,
+            @ForAll boolean persisted,
+            @ForAll boolean raw
+    ) {
+        EventType<EventContent> type = type(name);
+        List<Collection<? extends EventType<?>>> publishing = registered
+                ? Collections.singletonList(Collections.singletonList(type)) : null;
+        EventTypeRegistrar registrar = new EventTypeRegistrar(publishing, null);
+
+        EventTypeDescriptor descriptor = registrar.getDescriptor(type);
+        assert descriptor == registrar.getDescriptor(type) : "Descriptor should be computed once per type";
+        assert descriptor.getDestination().equals(name) : "Destination should be the type name, was " + descriptor.getDestination();
+
+        String id = persisted ? "42" : null;
+        byte[] payload = raw ? "{}".getBytes(StandardCharsets.UTF_8) : null;
+        Message<?> message = descriptor.toMessage(new Event<>(id, type, CONTENT, payload));
+        Message<?> other = descriptor.toMessage(new Event<>("43", type, CONTENT, payload));
+
+        MessageHeaders headers = message.getHeaders();
+        assert message.getPayload() == (raw ? payload : CONTENT) : "Unexpected payload " + message.getPayload();
+        assert name.equals(headers.get(EventTypeDescriptor.DESTINATION_HEADER)) : "Unexpected destination, headers=" + headers;
+        assert Objects.equals(id, headers.get(Constants.EVENT_PERSISTENT_ID_HEADER)) : "Unexpected persistent id, headers=" + headers;
+        assert "43".equals(other.getHeaders().get(Constants.EVENT_PERSISTENT_ID_HEADER)) : "Persistent ids leaked between messages";
+        assert raw == MimeTypeUtils.APPLICATION_JSON_VALUE.equals(headers.get(MessageHeaders.CONTENT_TYPE)) : "Unexpected content type, headers=" + headers;
+        assert headers.getId() == null && headers.getTimestamp() == null : "No id or timestamp expected, headers=" + headers;
+    }
+
+    @Provide
+    Arbitrary<String> names() {
+        return Arbitraries.strings().alpha().ofMinLength(1).ofMaxLength(20);
+    }
+}
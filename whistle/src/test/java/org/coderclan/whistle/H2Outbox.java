@@ -0,0 +1,120 @@
+package org.coderclan.whistle;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+import org.coderclan.whistle.rdbms.H2EventPersistenter;
+import org.h2.jdbcx.JdbcDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In-memory H2 outbox shared by the properties running against {@link H2EventPersistenter}.
+ * Every database is unique to its try, and dropped when closed.
+ */
+public final class H2Outbox implements AutoCloseable {
+    public static final String TABLE_NAME = "sys_persistent_event";
+
+    public static final EventType<Note> TYPE = new EventType<Note>() {
+        @Override
+        public String getName() {
+            return "test.Note";
+        }
+
+        @Override
+        public Class<Note> getContentType() {
+            return Note.class;
+        }
+    };
+
+    /**
+     * Content of the {@link #TYPE} events.
+     */
+    public static class Note implements EventContent {
+        private String text;
+
+        public Note() {
+        }
+
+        Note(String text) {
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+    }
+
+    private final JdbcDataSource dataSource = new JdbcDataSource();
+    /**
+     * The in-memory database lives as long as this connection.
+     */
+    private final Connection keeper;
+
+    private H2Outbox() throws SQLException {
+        dataSource.setURL("jdbc:h2:mem:outbox_" + System.nanoTime());
+        keeper = dataSource.getConnection();
+    }
+
+    public static H2Outbox open() throws SQLException {
+        return new H2Outbox();
+    }
+
+    public DataSource dataSource() {
+        return dataSource;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        keeper.close();
+    }
+
+    public static WhistleConfigurationProperties properties() {
+        WhistleConfigurationProperties properties = new WhistleConfigurationProperties();
+        properties.setPersistentTableName(TABLE_NAME);
+        properties.setRetrieveTransactionTimeout(5);
+        return properties;
+    }
+
+    public static EventTypeRegistrar registrar() {
+        return new EventTypeRegistrar(Collections.singletonList(Collections.singletonList(TYPE)), null);
+    }
+
+    public static EventContentSerializer serializer() {
+        return new JacksonEventContentSerializer(new ObjectMapper());
+    }
+
+    public H2EventPersistenter persistenter(WhistleConfigurationProperties properties) {
+        return new H2EventPersistenter(dataSource, serializer(), registrar(), properties);
+    }
+
+    public void execute(String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * @return the first column of the rows of the query, as strings
+     */
+    public List<String> query(String sql) throws SQLException {
+        List<String> values = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,91 @@
+package org.coderclan.whistle;
+
+import net.jqwik.api.*;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.api.EventType;
+import org.reactivestreams.Subscription;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Property 47: A stalled lane does not delay the other lanes
+ *
+ * For any interleaving of events of a slow type and of other types, while the subscriber of the slow lane requests
+ * nothing, the events of the other types are all delivered, in order, by the default lane.
+ */
+class LaneEventSenderProperties {
+
+    private static final EventType<EventContent> SLOW = type("test.Slow");
+    private static final EventType<EventContent> FAST = type("test.Fast");
+
+    private static final EventContent CONTENT = new EventContent() {
+    };
+
+    private static EventType<EventContent> type(String name) {
+        return new EventType<EventContent>() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Class<EventContent> getContentType() {
+                return EventContent.class;
+            }
+        };
+    }
+
+    /**
+     * Requests nothing, the lane stalls.
+     */
+    private static class IdleSubscriber extends BaseSubscriber<Message<?>> {
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            // request nothing.
+        }
+    }
+
+    @Property(tries = 20)
+    @Tag("Feature: whistle-event-system, Property 47: A stalled lane does not delay the other lanes")
+    void stalledLaneDoesNotDelayOtherLanes(@ForAll("interleavings") List<Boolean> slowEvents) {
+        Map<String, EventSender> lanes = new LinkedHashMap<>();
+        lanes.put(LaneEventSender.DEFAULT_LANE, new ReactorEventSender());
+        lanes.put("slow", new ReactorEventSender());
+        LaneEventSender sender = new LaneEventSender(lanes, Collections.singletonMap(SLOW.getName(), "slow"), 4);
+        try {
+            IdleSubscriber slowSubscriber = new IdleSubscriber();
+            sender.asFlux("slow").subscribe(slowSubscriber);
+
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < slowEvents.size(); i++) {
+                boolean slow = slowEvents.get(i);
+                sender.send(new Event<>(String.valueOf(i), slow ? SLOW : FAST, CONTENT));
+                if (!slow) {
+                    expected.add(String.valueOf(i));
+                }
+            }
+
+            List<String> received = sender.asFlux()
+                    .take(expected.size())
+                    .map(m -> (String) m.getHeaders().get(Constants.EVENT_PERSISTENT_ID_HEADER))
+                    .collectList()
+                    .block(Duration.ofSeconds(5));
+            assert expected.equals(received) : "Expected the events of the default lane in order, expected=" + expected + ", received=" + received;
+            slowSubscriber.dispose();
+        } finally {
+            sender.destroy();
+        }
+    }
+
+    @Provide
+    Arbitrary<List<Boolean>> interleavings() {
+        return Arbitraries.of(true, false).list().ofMaxSize(200);
+    }
+}
@@ -0,0 +1,128 @@
+package org.coderclan.whistle;
+
+import net.jqwik.api.*;
+import org.coderclan.whistle.exception.EventRetrievalException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Properties of the lease-based claim of {@link org.coderclan.whistle.rdbms.AbstractRdbmsEventPersistenter},
+ * run against an in-memory H2 outbox.
+ */
+class LeaseClaimProperties {
+
+    /**
+     * Property 49: Concurrent claims never return the same event
+     *
+     * For any number of due events and any batch sizes, two concurrent
+     * {@link EventPersistenter#retrieveUnconfirmedEvent(int)} calls return disjoint sets of events.
+     */
+    @Property(tries = 30)
+    @Tag("Feature: whistle-event-system, Property 49: Concurrent claims never return the same event")
+    void concurrentClaimsAreDisjoint(
+            @ForAll("eventCounts") int eventCount,
+            @ForAll("batchSizes") int firstBatch,
+            @ForAll("batchSizes") int secondBatch
+    ) throws Exception {
+        try (H2Outbox outbox = H2Outbox.open()) {
+            EventPersistenter first = outbox.persistenter(leasedProperties("node-1", 60));
+            EventPersistenter second = outbox.persistenter(leasedProperties("node-2", 60));
+            insertDueEvents(outbox, eventCount);
+
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                CountDownLatch start = new CountDownLatch(1);
+                Future<List<String>> firstIds = executor.submit(() -> claim(start, first, firstBatch));
+                Future<List<String>> secondIds = executor.submit(() -> claim(start, second, secondBatch));
+                start.countDown();
+
+                List<String> a = firstIds.get(30, TimeUnit.SECONDS);
+                List<String> b = secondIds.get(30, TimeUnit.SECONDS);
+                Set<String> common = new HashSet<>(a);
+                common.retainAll(b);
+                assert common.isEmpty() : "Both nodes claimed events " + common + ", first=" + a + ", second=" + b;
+                assert a.size() <= firstBatch && b.size() <= secondBatch : "A claim returned more events than its batch size";
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Property 50: A claimed event is not returned again before its lease expires
+     *
+     * For any number of due events, the events claimed by one node are not returned by any claim until their lease
+     * expires, and are returned again once it has expired.
+     */
+    @Property(tries = 5)
+    @Tag("Feature: whistle-event-system, Property 50: A claimed event is not returned again before its lease expires")
+    void claimedEventIsNotReturnedBeforeLeaseExpiry(@ForAll("eventCounts") int eventCount) throws Exception {
+        try (H2Outbox outbox = H2Outbox.open()) {
+            EventPersistenter first = outbox.persistenter(leasedProperties("node-1", 1));
+            EventPersistenter second = outbox.persistenter(leasedProperties("node-2", 1));
+            insertDueEvents(outbox, eventCount);
+
+            List<String> claimed = ids(first.retrieveUnconfirmedEvent(eventCount));
+            assert claimed.size() == eventCount : "Expected every due event to be claimed, claimed=" + claimed;
+            List<String> reclaimed = ids(second.retrieveUnconfirmedEvent(eventCount));
+            assert reclaimed.isEmpty() : "Leased events were returned again: " + reclaimed;
+
+            // the lease and the backoff are both 1 second.
+            Thread.sleep(1500);
+            List<String> expired = ids(second.retrieveUnconfirmedEvent(eventCount));
+            Collections.sort(claimed);
+            Collections.sort(expired);
+            assert expired.equals(claimed) : "Expected the events to be claimable after the lease expired, expected=" + claimed + ", actual=" + expired;
+        }
+    }
+
+    private static WhistleConfigurationProperties leasedProperties(String nodeId, int leaseDuration) {
+        WhistleConfigurationProperties properties = H2Outbox.properties();
+        properties.setNodeId(nodeId);
+        properties.setLeaseDuration(leaseDuration);
+        properties.setBackoffBase(1);
+        properties.setBackoffMax(1);
+        return properties;
+    }
+
+    private static void insertDueEvents(H2Outbox outbox, int count) throws SQLException {
+        for (int i = 0; i < count; i++) {
+            outbox.execute("insert into " + H2Outbox.TABLE_NAME + " (event_type, event_content, next_attempt_at) values ('"
+                    + H2Outbox.TYPE.getName() + "', '{\"text\":\"" + i + "\"}', dateadd(SECOND, -1, current_timestamp))");
+        }
+    }
+
+    private static List<String> claim(CountDownLatch start, EventPersistenter persistenter, int count) throws InterruptedException {
+        start.await();
+        try {
+            return ids(persistenter.retrieveUnconfirmedEvent(count));
+        } catch (EventRetrievalException e) {
+            // lost the lock race, nothing claimed.
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<String> ids(List<Event<?>> events) {
+        List<String> ids = new ArrayList<>(events.size());
+        for (Event<?> event : events) {
+            ids.add(event.getPersistentEventId());
+        }
+        return ids;
+    }
+
+    @Provide
+    Arbitrary<Integer> eventCounts() {
+        return Arbitraries.integers().between(1, 40);
+    }
+
+    @Provide
+    Arbitrary<Integer> batchSizes() {
+        return Arbitraries.integers().between(1, 32);
+    }
+}
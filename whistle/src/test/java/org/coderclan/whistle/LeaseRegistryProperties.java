@@ -0,0 +1,158 @@
+package org.coderclan.whistle;
+
+import net.jqwik.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Properties of {@link org.coderclan.whistle.rdbms.RdbmsLeaseRegistry}, run against an in-memory H2 outbox.
+ */
+class LeaseRegistryProperties {
+
+    private static final String SHARD_LEASE = H2Outbox.TABLE_NAME + ":shard:0";
+    private static final String LEADER_LEASE = H2Outbox.TABLE_NAME + ":leader";
+
+    /**
+     * Property 53: A shard has exactly one holder at a time
+     *
+     * For any number of workers racing for a shard lease, whether the lease row does not exist yet or was released,
+     * exactly one of them acquires it. For any sequence of acquisitions and releases, a worker acquires the lease if
+     * and only if it is free or already held by that worker.
+     */
+    @Property(tries = 20)
+    @Tag("Feature: whistle-event-system, Property 53: A shard has exactly one holder at a time")
+    void shardHasExactlyOneHolder(
+            @ForAll("holderCounts") int holderCount,
+            @ForAll("operations") List<Integer> operations
+    ) throws Exception {
+        try (H2Outbox outbox = H2Outbox.open()) {
+            LeaseRegistry registry = outbox.persistenter(H2Outbox.properties()).getLeaseRegistry();
+
+            String winner = race(registry, holderCount);
+            registry.release(SHARD_LEASE, winner);
+            race(registry, holderCount);
+            for (int h = 0; h < holderCount; h++) {
+                registry.release(SHARD_LEASE, holder(h));
+            }
+
+            String owner = null;
+            for (int operation : operations) {
+                String holder = holder(Math.abs(operation) % holderCount);
+                if (operation >= 0) {
+                    boolean expected = owner == null || owner.equals(holder);
+                    boolean acquired = registry.tryAcquire(SHARD_LEASE, holder, 60);
+                    assert acquired == expected : holder + " acquired=" + acquired + " while the lease was held by " + owner;
+                    if (acquired) {
+                        owner = holder;
+                    }
+                } else {
+                    registry.release(SHARD_LEASE, holder);
+                    if (holder.equals(owner)) {
+                        owner = null;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Property 54: Only one leader holds the lease before it expires
+     *
+     * For any number of nodes and any order of their attempts, only the node which acquired the leader lease holds it
+     * (and renews it) until it expires; once it expired without renewal, exactly one other node takes it over, and
+     * the former leader can not renew it.
+     */
+    @Property(tries = 5)
+    @Tag("Feature: whistle-event-system, Property 54: Only one leader holds the lease before it expires")
+    void onlyOneLeaderBeforeExpiry(
+            @ForAll("holderCounts") int nodeCount,
+            @ForAll("attempts") List<Integer> attempts
+    ) throws Exception {
+        try (H2Outbox outbox = H2Outbox.open()) {
+            LeaseRegistry registry = outbox.persistenter(H2Outbox.properties()).getLeaseRegistry();
+
+            String leader = null;
+            for (int attempt : attempts) {
+                String node = node(attempt % nodeCount);
+                boolean acquired = registry.tryAcquire(LEADER_LEASE, node, 1);
+                assert acquired == (leader == null || leader.equals(node)) :
+                        node + " acquired=" + acquired + " while " + leader + " held the leader lease";
+                if (acquired) {
+                    leader = node;
+                }
+            }
+            assert leader != null : "The first attempt should acquire the free leader lease";
+
+            // the lease lasts 1 second.
+            Thread.sleep(1500);
+            List<String> leaders = new ArrayList<>();
+            for (int n = 0; n < nodeCount; n++) {
+                String node = node(n);
+                if (!node.equals(leader) && registry.tryAcquire(LEADER_LEASE, node, 60)) {
+                    leaders.add(node);
+                }
+            }
+            assert leaders.size() == 1 : "Expected exactly one node to take over the expired leader lease, leaders=" + leaders;
+            assert !registry.tryAcquire(LEADER_LEASE, leader, 60) : "The former leader " + leader + " renewed the lease taken over by " + leaders;
+        }
+    }
+
+    /**
+     * Let the holders try to acquire the shard lease at the same time.
+     *
+     * @return the only holder which acquired it
+     */
+    private static String race(LeaseRegistry registry, int holderCount) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(holderCount);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int h = 0; h < holderCount; h++) {
+                String holder = holder(h);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return registry.tryAcquire(SHARD_LEASE, holder, 60);
+                }));
+            }
+            start.countDown();
+            List<String> winners = new ArrayList<>();
+            for (int h = 0; h < holderCount; h++) {
+                if (results.get(h).get(30, TimeUnit.SECONDS)) {
+                    winners.add(holder(h));
+                }
+            }
+            assert winners.size() == 1 : "Expected exactly one holder of the shard lease, holders=" + winners;
+            return winners.get(0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String holder(int index) {
+        return "node-" + index + "#0";
+    }
+
+    private static String node(int index) {
+        return "node-" + index;
+    }
+
+    @Provide
+    Arbitrary<Integer> holderCounts() {
+        return Arbitraries.integers().between(2, 6);
+    }
+
+    @Provide
+    Arbitrary<List<Integer>> attempts() {
+        return Arbitraries.integers().between(0, 5).list().ofMinSize(1).ofMaxSize(20);
+    }
+
+    /**
+     * Non-negative: the holder of that index acquires, negative: the holder of that index releases.
+     */
+    @Provide
+    Arbitrary<List<Integer>> operations() {
+        return Arbitraries.integers().between(-6, 6).list().ofMaxSize(30);
+    }
+}
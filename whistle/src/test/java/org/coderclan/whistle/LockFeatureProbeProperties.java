@@ -1,6 +1,7 @@
 package org.coderclan.whistle;
 
 import net.jqwik.api.*;
+import net.jqwik.api.lifecycle.AfterTry;
 import org.coderclan.whistle.rdbms.LockFeatureProbe;
 import org.h2.jdbcx.JdbcDataSource;
 
@@ -41,16 +42,28 @@ class LockFeatureProbeProperties {
     private static final String COUNT_SQL =
             "SELECT COUNT(*) FROM " + TABLE_NAME;
 
+    private Connection keeper;
+
     /**
      * Creates a fresh H2 in-memory DataSource with a unique database name
      * to ensure test isolation.
      */
-    private DataSource createDataSource() {
+    private DataSource createDataSource() throws SQLException {
         JdbcDataSource ds = new JdbcDataSource();
-        ds.setURL("jdbc:h2:mem:probe_test_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        ds.setURL("jdbc:h2:mem:probe_test_" + System.nanoTime());
+        // the in-memory database lives as long as this connection, closed after the try.
+        this.keeper = ds.getConnection();
         return ds;
     }
 
+    @AfterTry
+    void dropDatabase() throws SQLException {
+        if (keeper != null) {
+            keeper.close();
+            keeper = null;
+        }
+    }
+
     private void createTable(DataSource ds) throws SQLException {
         try (Connection conn = ds.getConnection();
              Statement stmt = conn.createStatement()) {
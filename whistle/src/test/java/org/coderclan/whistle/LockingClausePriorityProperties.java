@@ -66,8 +66,8 @@ class LockingClausePriorityProperties {
         }
 
         @Override
-        protected void fillDbId(PreparedStatement statement, String persistentEventId) throws SQLException {
-            statement.setLong(1, Long.parseLong(persistentEventId));
+        protected void fillDbId(PreparedStatement statement, int parameterIndex, String persistentEventId) throws SQLException {
+            statement.setLong(parameterIndex, Long.parseLong(persistentEventId));
         }
 
         @Override
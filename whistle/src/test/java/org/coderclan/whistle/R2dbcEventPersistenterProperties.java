@@ -0,0 +1,86 @@
+package org.coderclan.whistle;
+
+import io.r2dbc.h2.CloseableConnectionFactory;
+import io.r2dbc.h2.H2ConnectionFactory;
+import net.jqwik.api.*;
+import org.coderclan.whistle.r2dbc.H2R2dbcEventPersistenter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Property 55: R2DBC events are delivered once per lease until confirmed
+ *
+ * For any number of events persisted by {@link H2R2dbcEventPersistenter} and any prefix of them confirmed, the
+ * events are not claimed while their lease runs, are claimed once after it expired, are not claimed again while
+ * the claim lease runs, and only the unconfirmed events are claimed after it expired.
+ */
+class R2dbcEventPersistenterProperties {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Property(tries = 3)
+    @Tag("Feature: whistle-event-system, Property 55: R2DBC events are delivered once per lease until confirmed")
+    void eventsAreClaimedOncePerLeaseUntilConfirmed(
+            @ForAll("eventCounts") int eventCount,
+            @ForAll("confirmedRatios") int confirmedPercent
+    ) throws InterruptedException {
+        CloseableConnectionFactory connectionFactory = H2ConnectionFactory.inMemory("r2dbc_outbox_" + System.nanoTime());
+        try {
+            WhistleConfigurationProperties properties = H2Outbox.properties();
+            properties.setLeaseDuration(1);
+            properties.setBackoffBase(1);
+            properties.setBackoffMax(1);
+            ReactiveEventPersistenter persistenter = new H2R2dbcEventPersistenter(connectionFactory, H2Outbox.serializer(), H2Outbox.registrar(), properties);
+
+            List<String> persisted = new ArrayList<>();
+            for (int i = 0; i < eventCount; i++) {
+                persisted.add(persistenter.persistEvent(H2Outbox.TYPE, new H2Outbox.Note(String.valueOf(i))).block(TIMEOUT));
+            }
+            assert claim(persistenter, eventCount).isEmpty() : "Events were claimed while their persist lease runs";
+
+            // leases and backoffs last 1 second.
+            Thread.sleep(1500);
+            List<String> claimed = claim(persistenter, eventCount);
+            assert sorted(claimed).equals(sorted(persisted)) : "Expected every persisted event to be claimed, persisted=" + persisted + ", claimed=" + claimed;
+            List<String> reclaimed = claim(persistenter, eventCount);
+            assert reclaimed.isEmpty() : "Events were claimed again while their claim lease runs: " + reclaimed;
+
+            int confirmed = eventCount * confirmedPercent / 100;
+            persistenter.confirmEvents(persisted.subList(0, confirmed)).block(TIMEOUT);
+
+            Thread.sleep(1500);
+            List<String> unconfirmed = claim(persistenter, eventCount);
+            assert sorted(unconfirmed).equals(sorted(persisted.subList(confirmed, eventCount))) :
+                    "Expected only the unconfirmed events to be claimed again, claimed=" + unconfirmed;
+        } finally {
+            connectionFactory.close().block(TIMEOUT);
+        }
+    }
+
+    private static List<String> claim(ReactiveEventPersistenter persistenter, int count) {
+        List<String> ids = new ArrayList<>();
+        for (Event<?> event : persistenter.retrieveUnconfirmedEvent(Math.max(1, count)).block(TIMEOUT)) {
+            ids.add(event.getPersistentEventId());
+        }
+        return ids;
+    }
+
+    private static List<String> sorted(List<String> ids) {
+        List<String> copy = new ArrayList<>(ids);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    @Provide
+    Arbitrary<Integer> eventCounts() {
+        return Arbitraries.integers().between(0, 30);
+    }
+
+    @Provide
+    Arbitrary<Integer> confirmedRatios() {
+        return Arbitraries.integers().between(0, 100);
+    }
+}
@@ -0,0 +1,65 @@
+package org.coderclan.whistle;
+
+import net.jqwik.api.*;
+
+/**
+ * Property 44: Retry backoff is bounded and monotonic
+ *
+ * For any backoff settings and retried count, the delay lies within [delay / 2, delay] where
+ * {@code delay = min(backoffMax, backoffBase * backoffMultiplier ^ retriedCount)}, never overflows for huge retried counts,
+ * and the undisturbed delay (random = 1) never decreases as the retried count grows.
+ */
+class RetryBackoffProperties {
+
+    @Property(tries = 500)
+    @Tag("Feature: whistle-event-system, Property 44: Retry backoff is bounded and monotonic")
+    void delayIsBoundedAndMonotonic(
+            @ForAll("bases") int base,
+            @ForAll("multipliers") double multiplier,
+            @ForAll("maxes") int max,
+            @ForAll("retriedCounts") int retriedCount,
+            @ForAll("randoms") double random
+    ) {
+        WhistleConfigurationProperties properties = new WhistleConfigurationProperties();
+        properties.setBackoffBase(base);
+        properties.setBackoffMultiplier(multiplier);
+        properties.setBackoffMax(max);
+        RetryBackoff backoff = new RetryBackoff(properties);
+
+        double expected = Math.min(backoff.getMax(), backoff.getBase() * Math.pow(backoff.getMultiplier(), Math.min(retriedCount, 10_000)));
+        double delay = backoff.getDelaySeconds(retriedCount, random);
+
+        assert !Double.isNaN(delay) && !Double.isInfinite(delay) : "Delay overflowed: " + delay;
+        assert delay >= expected / 2 - 1e-6 && delay <= expected + 1e-6 :
+                "Delay " + delay + " out of [" + expected / 2 + ", " + expected + "]";
+        assert backoff.getDelaySeconds(retriedCount + 1, 1.0) >= backoff.getDelaySeconds(retriedCount, 1.0) :
+                "Delay decreased at retriedCount=" + retriedCount;
+        assert backoff.getDelaySeconds(Integer.MAX_VALUE, 1.0) >= backoff.getMax() * (1 - 1e-9) || backoff.getMultiplier() == 1.0 :
+                "Delay of a poison event must be capped to backoffMax";
+    }
+
+    @Provide
+    Arbitrary<Integer> bases() {
+        return Arbitraries.integers().between(1, 600);
+    }
+
+    @Provide
+    Arbitrary<Double> multipliers() {
+        return Arbitraries.doubles().between(1.0, 10.0);
+    }
+
+    @Provide
+    Arbitrary<Integer> maxes() {
+        return Arbitraries.integers().between(1, 86400);
+    }
+
+    @Provide
+    Arbitrary<Integer> retriedCounts() {
+        return Arbitraries.integers().between(0, Integer.MAX_VALUE - 1);
+    }
+
+    @Provide
+    Arbitrary<Double> randoms() {
+        return Arbitraries.doubles().between(0.0, true, 1.0, false).ofScale(6);
+    }
+}
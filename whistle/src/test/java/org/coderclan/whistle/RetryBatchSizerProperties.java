@@ -0,0 +1,80 @@
+package org.coderclan.whistle;
+
+import net.jqwik.api.*;
+
+import java.util.List;
+
+/**
+ * Property 43: Retry batch size stays within bounds
+ *
+ * For any sequence of batch outcomes, the adaptive batch size always stays within [1, maxRetryBatchSize],
+ * it shrinks on every contention (unless already 1), and the fixed batch size never changes.
+ */
+class RetryBatchSizerProperties {
+
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long LATENCY_TARGET_NANOS = 500_000_000L;
+
+    @Property(tries = 200)
+    @Tag("Feature: whistle-event-system, Property 43: Retry batch size stays within bounds")
+    void adaptiveBatchSizeStaysWithinBounds(
+            @ForAll("outcomes") List<Integer> outcomes,
+            @ForAll("initialSizes") int initialSize
+    ) {
+        RetryBatchSizer sizer = new RetryBatchSizer(properties(true, initialSize));
+
+        for (int outcome : outcomes) {
+            int before = sizer.getBatchSize();
+            if (outcome < 0) {
+                sizer.onContention();
+                assert sizer.getBatchSize() == Math.max(1, before / 2) || before == 1 :
+                        "Contention must halve the batch size, before=" + before + ", after=" + sizer.getBatchSize();
+            } else {
+                // outcome encodes a full batch (even) or a partial one (odd), and a fast (< 3) or slow batch.
+                int retrieved = outcome % 2 == 0 ? before : before / 2;
+                long elapsed = outcome < 3 ? LATENCY_TARGET_NANOS / 2 : LATENCY_TARGET_NANOS * 2;
+                sizer.onBatch(retrieved, elapsed);
+            }
+            assert sizer.getBatchSize() >= 1 && sizer.getBatchSize() <= MAX_BATCH_SIZE :
+                    "Batch size out of bounds: " + sizer.getBatchSize();
+        }
+    }
+
+    @Property(tries = 100)
+    @Tag("Feature: whistle-event-system, Property 43: Retry batch size stays within bounds")
+    void fixedBatchSizeNeverChanges(
+            @ForAll("outcomes") List<Integer> outcomes,
+            @ForAll("initialSizes") int initialSize
+    ) {
+        RetryBatchSizer sizer = new RetryBatchSizer(properties(false, initialSize));
+
+        for (int outcome : outcomes) {
+            if (outcome < 0) {
+                sizer.onContention();
+            } else {
+                sizer.onBatch(sizer.getBatchSize(), outcome < 3 ? 0 : LATENCY_TARGET_NANOS * 2);
+            }
+            assert sizer.getBatchSize() == initialSize :
+                    "Fixed batch size changed from " + initialSize + " to " + sizer.getBatchSize();
+        }
+    }
+
+    private static WhistleConfigurationProperties properties(boolean adaptive, int initialSize) {
+        WhistleConfigurationProperties properties = new WhistleConfigurationProperties();
+        properties.setAdaptiveRetryBatch(adaptive);
+        properties.setRetryBatchSize(initialSize);
+        properties.setMaxRetryBatchSize(MAX_BATCH_SIZE);
+        properties.setRetryBatchLatencyTarget((int) (LATENCY_TARGET_NANOS / 1_000_000L));
+        return properties;
+    }
+
+    @Provide
+    Arbitrary<List<Integer>> outcomes() {
+        return Arbitraries.integers().between(-1, 4).list().ofMaxSize(100);
+    }
+
+    @Provide
+    Arbitrary<Integer> initialSizes() {
+        return Arbitraries.integers().between(1, MAX_BATCH_SIZE);
+    }
+}
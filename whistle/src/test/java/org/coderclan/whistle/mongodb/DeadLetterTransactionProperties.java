@@ -0,0 +1,50 @@
+package org.coderclan.whistle.mongodb;
+
+import net.jqwik.api.*;
+import org.bson.Document;
+
+/**
+ * Property 56: Events are parked in a transaction whenever the server runs one
+ *
+ * For any reply of the {@code isMaster} command, the move to the dead-letter collection runs in a transaction if and
+ * only if the server is a replica set member of MongoDB 4.0+ (wire version 7) or a mongos of MongoDB 4.2+ (wire
+ * version 8). Standalone servers fall back to the ordered copy and removal.
+ */
+class DeadLetterTransactionProperties {
+
+    @Property(tries = 100)
+    @Tag("Feature: whistle-event-system, Property 56: Events are parked in a transaction whenever the server runs one")
+    void parkedInTransactionWhenSupported(
+            @ForAll("topologies") String topology,
+            @ForAll("wireVersions") int wireVersion
+    ) {
+        Document hello = new Document("ismaster", true).append("maxWireVersion", wireVersion);
+        if ("replicaSet".equals(topology)) {
+            hello.append("setName", "rs0");
+        } else if ("mongos".equals(topology)) {
+            hello.append("msg", "isdbgrid");
+        }
+
+        boolean expected = ("replicaSet".equals(topology) && wireVersion >= 7)
+                || ("mongos".equals(topology) && wireVersion >= 8);
+        assert MongodbEventPersistenter.supportsTransactions(hello) == expected :
+                "topology=" + topology + ", maxWireVersion=" + wireVersion;
+    }
+
+    @Property(tries = 1)
+    @Tag("Feature: whistle-event-system, Property 56: Events are parked in a transaction whenever the server runs one")
+    void notParkedInTransactionWithoutWireVersion() {
+        assert !MongodbEventPersistenter.supportsTransactions(new Document("setName", "rs0")) :
+                "A reply without maxWireVersion is from a server too old for transactions";
+    }
+
+    @Provide
+    Arbitrary<String> topologies() {
+        return Arbitraries.of("standalone", "replicaSet", "mongos");
+    }
+
+    @Provide
+    Arbitrary<Integer> wireVersions() {
+        return Arbitraries.integers().between(0, 21);
+    }
+}
@@ -0,0 +1,181 @@
+package org.coderclan.whistle.rdbms;
+
+import net.jqwik.api.*;
+import org.coderclan.whistle.Event;
+import org.coderclan.whistle.EventSender;
+import org.coderclan.whistle.H2Outbox;
+import org.coderclan.whistle.WhistleConfigurationProperties;
+import org.coderclan.whistle.api.EventContent;
+import org.coderclan.whistle.exception.EventRetrievalException;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Properties of {@link OutboxRelay}, run against an in-memory H2 outbox.
+ */
+class OutboxRelayProperties {
+
+    /**
+     * Records the ids of the sent events.
+     */
+    private static class RecordingEventSender implements EventSender {
+        private final List<String> ids = new ArrayList<>();
+
+        @Override
+        public void send(Event<? extends EventContent> event) {
+            ids.add(event.getPersistentEventId());
+        }
+
+        @Override
+        public Flux<Message<?>> asFlux() {
+            return Flux.empty();
+        }
+    }
+
+    /**
+     * Property 52: A relay taking over resumes from the watermark
+     *
+     * For any number of events and any prefix of them confirmed, once the relay which published them lost its lease,
+     * the relay taking over publishes every unconfirmed event after the watermark, in id order, and nothing before it.
+     * No relay publishes while another one holds the lease.
+     */
+    @Property(tries = 5)
+    @Tag("Feature: whistle-event-system, Property 52: A relay taking over resumes from the watermark")
+    void takeoverResumesFromWatermark(
+            @ForAll("eventCounts") int eventCount,
+            @ForAll("confirmedRatios") int confirmedPercent,
+            @ForAll("pageSizes") int pageSize
+    ) throws Exception {
+        int confirmed = eventCount * confirmedPercent / 100;
+        try (H2Outbox outbox = H2Outbox.open()) {
+            AbstractRdbmsEventPersistenter persistenter = outbox.persistenter(H2Outbox.properties());
+            // only creates the cursor, relayWorker is false.
+            new OutboxRelay(persistenter, new RecordingEventSender(), relayProperties("bootstrap", pageSize, false)).onApplicationEvent(null);
+            for (int i = 0; i < eventCount; i++) {
+                outbox.execute("insert into " + H2Outbox.TABLE_NAME + " (event_type, event_content) values ('"
+                        + H2Outbox.TYPE.getName() + "', '{\"text\":\"" + i + "\"}')");
+            }
+
+            RecordingEventSender first = new RecordingEventSender();
+            OutboxRelay firstRelay = new OutboxRelay(persistenter, first, relayProperties("node-1", pageSize, true));
+            firstRelay.relay();
+            assert first.ids.equals(ids(1, eventCount)) : "Expected every event to be published in id order, published=" + first.ids;
+
+            outbox.execute("update " + H2Outbox.TABLE_NAME + " set success=true where id<=" + confirmed);
+            // advances the watermark over the confirmed events.
+            firstRelay.relay();
+
+            RecordingEventSender second = new RecordingEventSender();
+            OutboxRelay secondRelay = new OutboxRelay(persistenter, second, relayProperties("node-2", pageSize, true));
+            secondRelay.relay();
+            assert second.ids.isEmpty() : "A relay published while the lease was held by another one, published=" + second.ids;
+
+            // the lease lasts 1 second.
+            Thread.sleep(1500);
+            secondRelay.relay();
+            assert second.ids.equals(ids(confirmed + 1, eventCount)) :
+                    "Expected the events after the watermark " + confirmed + " to be published, published=" + second.ids;
+        }
+    }
+
+    /**
+     * Property 57: The retrier never sends an event ahead of the relay
+     *
+     * For any number of events which became due before a lagging relay reached them, a retrier polling while the relay
+     * publishes them claims nothing the relay has not published yet: every event is sent exactly once, by the relay,
+     * in id order.
+     */
+    @Property(tries = 5)
+    @Tag("Feature: whistle-event-system, Property 57: The retrier never sends an event ahead of the relay")
+    void retrierDoesNotOvertakeLaggingRelay(
+            @ForAll("eventCounts") int eventCount,
+            @ForAll("pageSizes") int pageSize
+    ) throws Exception {
+        try (H2Outbox outbox = H2Outbox.open()) {
+            WhistleConfigurationProperties properties = relayProperties("node-1", pageSize, true);
+            properties.setLeaseDuration(60);
+            AbstractRdbmsEventPersistenter persistenter = outbox.persistenter(properties);
+            RecordingEventSender relayed = new RecordingEventSender() {
+                @Override
+                public void send(Event<? extends EventContent> event) {
+                    // a slow binder, so that the retrier polls between the pages.
+                    Thread.yield();
+                    super.send(event);
+                }
+            };
+            // only creates the cursor, relayWorker is false.
+            new OutboxRelay(persistenter, new RecordingEventSender(), relayProperties("bootstrap", pageSize, false)).onApplicationEvent(null);
+            OutboxRelay relay = new OutboxRelay(persistenter, relayed, properties);
+            for (int i = 0; i < eventCount; i++) {
+                outbox.execute("insert into " + H2Outbox.TABLE_NAME + " (event_type, event_content, next_attempt_at) values ('"
+                        + H2Outbox.TYPE.getName() + "', '{\"text\":\"" + i + "\"}', dateadd(HOUR, -1, current_timestamp))");
+            }
+            assert persistenter.retrieveUnconfirmedEvent(eventCount + 1).isEmpty() :
+                    "The retrier claimed events before the relay acquired its lease";
+
+            List<String> retried = Collections.synchronizedList(new ArrayList<>());
+            AtomicBoolean relaying = new AtomicBoolean(true);
+            Thread retrier = new Thread(() -> {
+                while (relaying.get()) {
+                    try {
+                        for (Event<?> e : persistenter.retrieveUnconfirmedEvent(pageSize)) {
+                            retried.add(e.getPersistentEventId());
+                        }
+                    } catch (EventRetrievalException e) {
+                        // rows locked by the relay, as FailedEventRetrier, try again.
+                    }
+                }
+            });
+            retrier.start();
+            try {
+                relay.relay();
+            } finally {
+                relaying.set(false);
+                retrier.join(30_000);
+            }
+            for (Event<?> e : persistenter.retrieveUnconfirmedEvent(eventCount + 1)) {
+                retried.add(e.getPersistentEventId());
+            }
+
+            assert relayed.ids.equals(ids(1, eventCount)) : "Expected every event to be relayed in id order, relayed=" + relayed.ids;
+            assert retried.isEmpty() : "The retrier sent events the relay was publishing, retried=" + retried;
+        }
+    }
+
+    private static WhistleConfigurationProperties relayProperties(String nodeId, int pageSize, boolean relayWorker) {
+        WhistleConfigurationProperties properties = H2Outbox.properties();
+        properties.setNodeId(nodeId);
+        properties.setLeaseDuration(1);
+        properties.setRelayPageSize(pageSize);
+        properties.setRelayWorker(relayWorker);
+        return properties;
+    }
+
+    private static List<String> ids(int from, int to) {
+        List<String> ids = new ArrayList<>();
+        for (int id = from; id <= to; id++) {
+            ids.add(String.valueOf(id));
+        }
+        return ids;
+    }
+
+    @Provide
+    Arbitrary<Integer> eventCounts() {
+        return Arbitraries.integers().between(0, 60);
+    }
+
+    @Provide
+    Arbitrary<Integer> confirmedRatios() {
+        return Arbitraries.integers().between(0, 100);
+    }
+
+    @Provide
+    Arbitrary<Integer> pageSizes() {
+        return Arbitraries.integers().between(1, 20);
+    }
+}